@@ -0,0 +1,77 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import io.github.memo33.jsquish.Squish.AxisSolver;
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Compares the speed of the principle axis solvers. For their accuracy,
+// see AxisSolverComparison.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AxisSolverBenchmark {
+
+    private static final int SIZE = 256;
+
+    @Param({"ANALYTIC", "POWER_ITERATION"})
+    public AxisSolver solver;
+
+    @Param({"DXT1", "DXT5"})
+    public CompressionType type;
+
+    @Param({"CLUSTER_FIT", "RANGE_FIT"})
+    public CompressionMethod method;
+
+    @Param({"GRADIENT", "NOISE", "ALPHA"})
+    public BenchImage image;
+
+    private SquishCompressor compressor;
+    private byte[] rgba;
+    private byte[] blocks;
+
+    @Setup
+    public void setup() {
+        compressor = new SquishCompressor(type, CompressionOptions.DEFAULT.withMethod(method).withAxisSolver(solver));
+        rgba = image.create(SIZE, SIZE);
+        blocks = new byte[Squish.getStorageRequirements(SIZE, SIZE, type)];
+    }
+
+    @Benchmark
+    public byte[] compressImage() {
+        return compressor.compressImage(rgba, SIZE, SIZE, blocks);
+    }
+
+}
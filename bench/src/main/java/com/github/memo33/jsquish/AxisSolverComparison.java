@@ -0,0 +1,77 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import io.github.memo33.jsquish.Squish.AxisSolver;
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Prints the compression error of the principle axis solvers on the
+// synthetic images. Run with `sbt "bench/runMain io.github.memo33.jsquish.AxisSolverComparison"`.
+public final class AxisSolverComparison {
+
+    private static final int SIZE = 256;
+
+    private AxisSolverComparison() {
+    }
+
+    public static void main(final String[] args) {
+        System.out.printf("%-14s %-5s %-12s %12s %12s%n", "image", "type", "method", "ANALYTIC", "POWER_ITER.");
+        for ( final BenchImage image : BenchImage.values() ) {
+            final byte[] rgba = image.create(SIZE, SIZE);
+            for ( final CompressionType type : new CompressionType[] { CompressionType.DXT1, CompressionType.DXT5 } ) {
+                for ( final CompressionMethod method : CompressionMethod.values() ) {
+                    System.out.printf("%-14s %-5s %-12s", image, type, method);
+                    for ( final AxisSolver solver : AxisSolver.values() ) {
+                        final SquishCompressor compressor = new SquishCompressor(type, CompressionOptions.DEFAULT.withMethod(method).withAxisSolver(solver));
+                        final byte[] blocks = compressor.compressImage(rgba, SIZE, SIZE, null);
+                        final byte[] decompressed = Squish.decompressImage(null, SIZE, SIZE, blocks, type);
+                        System.out.printf(" %12.5f", rootMeanSquareColourError(rgba, decompressed, type == CompressionType.DXT1));
+                    }
+                    System.out.println();
+                }
+            }
+        }
+    }
+
+    // the error of the colour channels, ignoring pixels that are transparent in DXT1
+    private static double rootMeanSquareColourError(final byte[] expected, final byte[] actual, final boolean isDXT1) {
+        double error = 0.0;
+        int count = 0;
+        for ( int i = 0; i < expected.length; i += 4 ) {
+            if ( isDXT1 && (expected[i + 3] & 0xFF) < 128 )
+                continue;
+            for ( int j = i; j < i + 3; ++j ) {
+                final int diff = (expected[j] & 0xFF) - (actual[j] & 0xFF);
+                error += diff * diff;
+            }
+            count += 3;
+        }
+        return count == 0 ? 0.0 : Math.sqrt(error / count);
+    }
+
+}
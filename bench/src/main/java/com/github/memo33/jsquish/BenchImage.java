@@ -0,0 +1,100 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.util.Random;
+
+// Synthetic test images stressing different paths of the compressors.
+public enum BenchImage {
+
+    // every block has a single colour
+    SINGLE_COLOUR {
+        void fill(final byte[] rgba, final int width, final int height, final Random random) {
+            for ( int y = 0; y < height; ++y ) {
+                for ( int x = 0; x < width; ++x ) {
+                    final int block = (x / 4) * 31 + (y / 4) * 17;
+                    set(rgba, width, x, y, block * 7, block * 13, block * 23, 255);
+                }
+            }
+        }
+    },
+
+    // smooth colour gradients
+    GRADIENT {
+        void fill(final byte[] rgba, final int width, final int height, final Random random) {
+            for ( int y = 0; y < height; ++y ) {
+                for ( int x = 0; x < width; ++x ) {
+                    set(rgba, width, x, y, 255 * x / width, 255 * y / height, 255 * (x + y) / (width + height), 255);
+                }
+            }
+        }
+    },
+
+    // uniformly random colours
+    NOISE {
+        void fill(final byte[] rgba, final int width, final int height, final Random random) {
+            for ( int y = 0; y < height; ++y ) {
+                for ( int x = 0; x < width; ++x ) {
+                    set(rgba, width, x, y, random.nextInt(256), random.nextInt(256), random.nextInt(256), 255);
+                }
+            }
+        }
+    },
+
+    // noisy gradients with transparent, opaque and translucent areas
+    ALPHA {
+        void fill(final byte[] rgba, final int width, final int height, final Random random) {
+            for ( int y = 0; y < height; ++y ) {
+                for ( int x = 0; x < width; ++x ) {
+                    final int alpha;
+                    switch ( (x / 16 + y / 16) % 3 ) {
+                        case 0: alpha = 0; break;
+                        case 1: alpha = 255; break;
+                        default: alpha = random.nextInt(256);
+                    }
+                    set(rgba, width, x, y, 255 * x / width + random.nextInt(16), 255 * y / height + random.nextInt(16), random.nextInt(64), alpha);
+                }
+            }
+        }
+    };
+
+    abstract void fill(byte[] rgba, int width, int height, Random random);
+
+    byte[] create(final int width, final int height) {
+        final byte[] rgba = new byte[width * height * 4];
+        fill(rgba, width, height, new Random(42));
+        return rgba;
+    }
+
+    private static void set(final byte[] rgba, final int width, final int x, final int y, final int r, final int g, final int b, final int a) {
+        final int i = 4 * (width * y + x);
+        rgba[i + 0] = (byte)r;
+        rgba[i + 1] = (byte)g;
+        rgba[i + 2] = (byte)b;
+        rgba[i + 3] = (byte)a;
+    }
+
+}
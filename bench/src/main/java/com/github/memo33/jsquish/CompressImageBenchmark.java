@@ -0,0 +1,72 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionMetric;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressImageBenchmark {
+
+    private static final int SIZE = 256;
+
+    @Param({"DXT1", "DXT3", "DXT5"})
+    public CompressionType type;
+
+    @Param({"CLUSTER_FIT", "RANGE_FIT"})
+    public CompressionMethod method;
+
+    @Param({"PERCEPTUAL", "UNIFORM"})
+    public CompressionMetric metric;
+
+    @Param({"SINGLE_COLOUR", "GRADIENT", "NOISE", "ALPHA"})
+    public BenchImage image;
+
+    private byte[] rgba;
+    private byte[] blocks;
+
+    @Setup
+    public void setup() {
+        rgba = image.create(SIZE, SIZE);
+        blocks = new byte[Squish.getStorageRequirements(SIZE, SIZE, type)];
+    }
+
+    @Benchmark
+    public byte[] compressImage() {
+        return Squish.compressImage(rgba, SIZE, SIZE, blocks, type, method, metric, false);
+    }
+
+}
@@ -0,0 +1,130 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.github.memo33.jsquish.Squish.AxisSolver;
+import io.github.memo33.jsquish.Squish.CompressionMetric;
+import io.github.memo33.jsquish.Squish.CompressionQuality;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Micro-benchmarks of the individual stages of compressing a block. Each
+// operation processes all blocks of a small image.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@OperationsPerInvocation(StageBenchmark.BLOCKS)
+public class StageBenchmark {
+
+    static final int BLOCKS = 256;
+
+    private static final int SIZE = 64;
+
+    @Param({"SINGLE_COLOUR", "GRADIENT", "NOISE", "ALPHA"})
+    public BenchImage image;
+
+    // the source blocks in the format expected by the compressors
+    private final byte[][] rgba = new byte[BLOCKS][16 * 4];
+
+    // colour sets of all blocks, initialised up front
+    private final ColourSet[] colours = new ColourSet[BLOCKS];
+    private final Matrix[] covariances = new Matrix[BLOCKS];
+    private final CompressorCluster[] clusters = new CompressorCluster[BLOCKS];
+
+    private final ColourSet colourSet = new ColourSet();
+    private final Matrix covariance = new Matrix();
+    private final Vec principle = new Vec();
+    private final CompressorAlpha alphaCompressor = new CompressorAlpha();
+    private final byte[] block = new byte[16];
+
+    @Setup
+    public void setup() {
+        final byte[] source = image.create(SIZE, SIZE);
+        final ColourBlock writer = new ColourBlock();
+        for ( int n = 0; n < BLOCKS; ++n ) {
+            final int x = 4 * (n % (SIZE / 4));
+            final int y = 4 * (n / (SIZE / 4));
+            for ( int py = 0; py < 4; ++py )
+                System.arraycopy(source, 4 * (SIZE * (y + py) + x), rgba[n], 16 * py, 16);
+
+            colours[n] = new ColourSet();
+            colours[n].init(rgba[n], 0xFFFF, CompressionType.DXT5, false);
+            covariances[n] = Matrix.computeWeightedCovariance(colours[n], null);
+            clusters[n] = new CompressorCluster(colours[n], CompressionType.DXT5, CompressionMetric.PERCEPTUAL, AxisSolver.ANALYTIC, CompressionQuality.NORMAL, writer);
+        }
+    }
+
+    @Benchmark
+    public void colourSetInit(final Blackhole bh) {
+        for ( int n = 0; n < BLOCKS; ++n ) {
+            colourSet.init(rgba[n], 0xFFFF, CompressionType.DXT5, false);
+            bh.consume(colourSet.getCount());
+        }
+    }
+
+    @Benchmark
+    public void computeWeightedCovariance(final Blackhole bh) {
+        for ( int n = 0; n < BLOCKS; ++n )
+            bh.consume(Matrix.computeWeightedCovariance(colours[n], covariance));
+    }
+
+    @Benchmark
+    public void computePrincipleComponent(final Blackhole bh) {
+        for ( int n = 0; n < BLOCKS; ++n )
+            bh.consume(Matrix.computePrincipleComponent(covariances[n], principle));
+    }
+
+    @Benchmark
+    public void computePrincipleComponentPowerIteration(final Blackhole bh) {
+        for ( int n = 0; n < BLOCKS; ++n )
+            bh.consume(Matrix.computePrincipleComponentPowerIteration(covariances[n], principle));
+    }
+
+    // includes the initialisation of the compressor, i.e. computing the principle component
+    @Benchmark
+    public void clusterCompress4(final Blackhole bh) {
+        for ( int n = 0; n < BLOCKS; ++n ) {
+            clusters[n].init();
+            clusters[n].compress4(block, 8);
+        }
+        bh.consume(block);
+    }
+
+    @Benchmark
+    public void compressAlphaDxt5(final Blackhole bh) {
+        for ( int n = 0; n < BLOCKS; ++n )
+            alphaCompressor.compressAlphaDxt5(rgba[n], 0xFFFF, block, 0);
+        bh.consume(block);
+    }
+
+}
@@ -0,0 +1,127 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import io.github.memo33.jsquish.Squish.CompressionMetric;
+
+// Evaluates the partitions of a batch in SIMD lanes using the Vector API of
+// Java 17+. This class is only part of the multi-release jar for Java 17+ and
+// is only used if the jdk.incubator.vector module is available. The results
+// are identical to those of the scalar PartitionBatch.solve.
+final class VectorPartitionSolver implements PartitionBatch.Solver {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // whether the vector operations run on SIMD instructions, as opposed to
+    // being emulated
+    static boolean isSupported() {
+        return SPECIES.length() >= 4;
+    }
+
+    @Override
+    public void computeErrors(final PartitionBatch batch, final float xxX, final float xxY, final float xxZ, final CompressionMetric metric) {
+        final int size = batch.size;
+        final int bound = SPECIES.loopBound(size);
+
+        int p = 0;
+        for ( ; p < bound; p += SPECIES.length() ) {
+            final FloatVector alpha2_sum = FloatVector.fromArray(SPECIES, batch.alpha2, p);
+            final FloatVector beta2_sum = FloatVector.fromArray(SPECIES, batch.beta2, p);
+            final FloatVector alphabeta_sum = FloatVector.fromArray(SPECIES, batch.alphabeta, p);
+
+            // zero where non-determinate
+            final VectorMask<Float> betaZero = beta2_sum.eq(0.0f);
+            final VectorMask<Float> alphaZero = alpha2_sum.eq(0.0f).andNot(betaZero);
+            final VectorMask<Float> determinate = betaZero.or(alphaZero).not();
+
+            final FloatVector alphaRcp = FloatVector.broadcast(SPECIES, 1.0f).div(alpha2_sum);
+            final FloatVector betaRcp = FloatVector.broadcast(SPECIES, 1.0f).div(beta2_sum);
+            final FloatVector rcp = FloatVector.broadcast(SPECIES, 1.0f).div(alpha2_sum.mul(beta2_sum).sub(alphabeta_sum.mul(alphabeta_sum)));
+            final VectorMask<Float> infinite = rcp.eq(1.0f / 0.0f).and(determinate);
+
+            final FloatVector alphax_sumX = FloatVector.fromArray(SPECIES, batch.alphaxX, p);
+            final FloatVector betax_sumX = FloatVector.fromArray(SPECIES, batch.betaxX, p);
+            final FloatVector aX = clamp(alphax_sumX.mul(beta2_sum).sub(betax_sumX.mul(alphabeta_sum)).mul(rcp)
+                                           .blend(alphax_sumX.mul(alphaRcp), betaZero)
+                                           .blend(0.0f, alphaZero), CompressorColourFit.GRID_X, CompressorColourFit.GRID_X_RCP);
+            final FloatVector bX = clamp(betax_sumX.mul(alpha2_sum).sub(alphax_sumX.mul(alphabeta_sum)).mul(rcp)
+                                           .blend(0.0f, betaZero)
+                                           .blend(betax_sumX.mul(betaRcp), alphaZero), CompressorColourFit.GRID_X, CompressorColourFit.GRID_X_RCP);
+            final FloatVector eX = aX.mul(aX).mul(alpha2_sum).add(bX.mul(bX).mul(beta2_sum)).add(xxX)
+                                     .add(aX.mul(bX).mul(alphabeta_sum).sub(aX.mul(alphax_sumX)).sub(bX.mul(betax_sumX)).mul(2.0f));
+
+            final FloatVector alphax_sumY = FloatVector.fromArray(SPECIES, batch.alphaxY, p);
+            final FloatVector betax_sumY = FloatVector.fromArray(SPECIES, batch.betaxY, p);
+            final FloatVector aY = clamp(alphax_sumY.mul(beta2_sum).sub(betax_sumY.mul(alphabeta_sum)).mul(rcp)
+                                           .blend(alphax_sumY.mul(alphaRcp), betaZero)
+                                           .blend(0.0f, alphaZero), CompressorColourFit.GRID_Y, CompressorColourFit.GRID_Y_RCP);
+            final FloatVector bY = clamp(betax_sumY.mul(alpha2_sum).sub(alphax_sumY.mul(alphabeta_sum)).mul(rcp)
+                                           .blend(0.0f, betaZero)
+                                           .blend(betax_sumY.mul(betaRcp), alphaZero), CompressorColourFit.GRID_Y, CompressorColourFit.GRID_Y_RCP);
+            final FloatVector eY = aY.mul(aY).mul(alpha2_sum).add(bY.mul(bY).mul(beta2_sum)).add(xxY)
+                                     .add(aY.mul(bY).mul(alphabeta_sum).sub(aY.mul(alphax_sumY)).sub(bY.mul(betax_sumY)).mul(2.0f));
+
+            final FloatVector alphax_sumZ = FloatVector.fromArray(SPECIES, batch.alphaxZ, p);
+            final FloatVector betax_sumZ = FloatVector.fromArray(SPECIES, batch.betaxZ, p);
+            final FloatVector aZ = clamp(alphax_sumZ.mul(beta2_sum).sub(betax_sumZ.mul(alphabeta_sum)).mul(rcp)
+                                           .blend(alphax_sumZ.mul(alphaRcp), betaZero)
+                                           .blend(0.0f, alphaZero), CompressorColourFit.GRID_Z, CompressorColourFit.GRID_Z_RCP);
+            final FloatVector bZ = clamp(betax_sumZ.mul(alpha2_sum).sub(alphax_sumZ.mul(alphabeta_sum)).mul(rcp)
+                                           .blend(0.0f, betaZero)
+                                           .blend(betax_sumZ.mul(betaRcp), alphaZero), CompressorColourFit.GRID_Z, CompressorColourFit.GRID_Z_RCP);
+            final FloatVector eZ = aZ.mul(aZ).mul(alpha2_sum).add(bZ.mul(bZ).mul(beta2_sum)).add(xxZ)
+                                     .add(aZ.mul(bZ).mul(alphabeta_sum).sub(aZ.mul(alphax_sumZ)).sub(bZ.mul(betax_sumZ)).mul(2.0f));
+
+            // apply the metric to the error term
+            eX.mul(metric.r).add(eY.mul(metric.g)).add(eZ.mul(metric.b))
+              .blend(Float.MAX_VALUE, infinite)
+              .intoArray(batch.errors, p);
+        }
+
+        // the remaining partitions
+        PartitionBatch.computeErrors(batch, p, size, xxX, xxY, xxZ, metric);
+    }
+
+    // same as CompressorColourFit.clamp
+    private static FloatVector clamp(final FloatVector v, final float grid, final float gridRcp) {
+        // round down by adding and subtracting 2^23, which rounds to the nearest
+        // integer, and correcting upwards roundings (exact for the values in [0, 64]
+        // that are not replaced below), as conversions to int are not intrinsified
+        final FloatVector x = v.mul(grid).add(0.5f);
+        final FloatVector rounded = x.add(8388608.0f).sub(8388608.0f);
+        final FloatVector truncated = rounded.blend(rounded.sub(1.0f), rounded.compare(VectorOperators.GT, x));
+
+        return truncated.mul(gridRcp)
+                .blend(0.0f, v.compare(VectorOperators.LE, 0.0f).or(v.test(VectorOperators.IS_NAN)))
+                .blend(1.0f, v.compare(VectorOperators.GE, 1.0f));
+    }
+
+}
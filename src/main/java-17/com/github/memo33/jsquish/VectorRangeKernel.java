@@ -0,0 +1,239 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import io.github.memo33.jsquish.Squish.CompressionMetric;
+
+import static io.github.memo33.jsquish.RangeBatch.LANES;
+
+// Fits the blocks of a range batch with one block per SIMD lane using the
+// Vector API of Java 17+. This class is only part of the multi-release jar for
+// Java 17+ and is only used if the jdk.incubator.vector module is available.
+// The results are identical to those of CompressorRange and CompressorAlpha.
+final class VectorRangeKernel implements RangeBatch.Kernel {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_256;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_256;
+
+    // whether the vector operations run on SIMD instructions with one block
+    // per lane, as opposed to being emulated
+    static boolean isSupported() {
+        return FloatVector.SPECIES_PREFERRED.length() >= LANES && FLOATS.length() == LANES;
+    }
+
+    @Override
+    public void computeCovariance(final RangeBatch batch) {
+        final int count = batch.maxCount;
+
+        // compute the centroids, where the padding adds zero weights
+        FloatVector total = FloatVector.zero(FLOATS);
+        FloatVector centroidX = FloatVector.zero(FLOATS);
+        FloatVector centroidY = FloatVector.zero(FLOATS);
+        FloatVector centroidZ = FloatVector.zero(FLOATS);
+        for ( int i = 0; i < count; ++i ) {
+            final FloatVector w = FloatVector.fromArray(FLOATS, batch.weights, i * LANES);
+            total = total.add(w);
+            centroidX = centroidX.add(FloatVector.fromArray(FLOATS, batch.pointsX, i * LANES).mul(w));
+            centroidY = centroidY.add(FloatVector.fromArray(FLOATS, batch.pointsY, i * LANES).mul(w));
+            centroidZ = centroidZ.add(FloatVector.fromArray(FLOATS, batch.pointsZ, i * LANES).mul(w));
+        }
+        final FloatVector rcp = FloatVector.broadcast(FLOATS, 1.0f).div(total);
+        centroidX = centroidX.mul(rcp);
+        centroidY = centroidY.mul(rcp);
+        centroidZ = centroidZ.mul(rcp);
+
+        // accumulate the covariance matrices, where the padding only adds zeros
+        // to sums that started from positive zero and so cannot be negative zero
+        FloatVector c0 = FloatVector.zero(FLOATS);
+        FloatVector c1 = FloatVector.zero(FLOATS);
+        FloatVector c2 = FloatVector.zero(FLOATS);
+        FloatVector c3 = FloatVector.zero(FLOATS);
+        FloatVector c4 = FloatVector.zero(FLOATS);
+        FloatVector c5 = FloatVector.zero(FLOATS);
+        for ( int i = 0; i < count; ++i ) {
+            final FloatVector w = FloatVector.fromArray(FLOATS, batch.weights, i * LANES);
+
+            final FloatVector aX = FloatVector.fromArray(FLOATS, batch.pointsX, i * LANES).sub(centroidX);
+            final FloatVector aY = FloatVector.fromArray(FLOATS, batch.pointsY, i * LANES).sub(centroidY);
+            final FloatVector aZ = FloatVector.fromArray(FLOATS, batch.pointsZ, i * LANES).sub(centroidZ);
+
+            final FloatVector bX = aX.mul(w);
+            final FloatVector bY = aY.mul(w);
+            final FloatVector bZ = aZ.mul(w);
+
+            c0 = c0.add(aX.mul(bX));
+            c1 = c1.add(aX.mul(bY));
+            c2 = c2.add(aX.mul(bZ));
+            c3 = c3.add(aY.mul(bY));
+            c4 = c4.add(aY.mul(bZ));
+            c5 = c5.add(aZ.mul(bZ));
+        }
+        c0.intoArray(batch.covariance, 0);
+        c1.intoArray(batch.covariance, LANES);
+        c2.intoArray(batch.covariance, 2 * LANES);
+        c3.intoArray(batch.covariance, 3 * LANES);
+        c4.intoArray(batch.covariance, 4 * LANES);
+        c5.intoArray(batch.covariance, 5 * LANES);
+    }
+
+    @Override
+    public void computeRange(final RangeBatch batch) {
+        final FloatVector pX = FloatVector.fromArray(FLOATS, batch.principleX, 0);
+        final FloatVector pY = FloatVector.fromArray(FLOATS, batch.principleY, 0);
+        final FloatVector pZ = FloatVector.fromArray(FLOATS, batch.principleZ, 0);
+
+        // the padding projects onto the first point, so it is neither less
+        // than the min nor greater than the max
+        IntVector minIndex = IntVector.zero(INTS);
+        IntVector maxIndex = IntVector.zero(INTS);
+        FloatVector min = project(batch, 0, pX, pY, pZ);
+        FloatVector max = min;
+        for ( int i = 1; i < batch.maxCount; ++i ) {
+            final FloatVector val = project(batch, i, pX, pY, pZ);
+            final VectorMask<Float> less = val.lt(min);
+            final VectorMask<Float> greater = val.compare(VectorOperators.GT, max).andNot(less);
+            minIndex = minIndex.blend(i, less.cast(INTS));
+            min = min.blend(val, less);
+            maxIndex = maxIndex.blend(i, greater.cast(INTS));
+            max = max.blend(val, greater);
+        }
+        minIndex.intoArray(batch.minIndex, 0);
+        maxIndex.intoArray(batch.maxIndex, 0);
+    }
+
+    private static FloatVector project(final RangeBatch batch, final int i, final FloatVector pX, final FloatVector pY, final FloatVector pZ) {
+        return FloatVector.fromArray(FLOATS, batch.pointsX, i * LANES).mul(pX)
+                .add(FloatVector.fromArray(FLOATS, batch.pointsY, i * LANES).mul(pY))
+                .add(FloatVector.fromArray(FLOATS, batch.pointsZ, i * LANES).mul(pZ));
+    }
+
+    @Override
+    public void fitCodes(final RangeBatch batch, final int codeCount, final int[] closest, final float[] errors) {
+        final CompressionMetric metric = batch.task.metric;
+        final int mid = codeCount == 3 ? 4 : 2;
+
+        final FloatVector c0X = FloatVector.fromArray(FLOATS, batch.codesX, 0);
+        final FloatVector c0Y = FloatVector.fromArray(FLOATS, batch.codesY, 0);
+        final FloatVector c0Z = FloatVector.fromArray(FLOATS, batch.codesZ, 0);
+        final FloatVector c1X = FloatVector.fromArray(FLOATS, batch.codesX, LANES);
+        final FloatVector c1Y = FloatVector.fromArray(FLOATS, batch.codesY, LANES);
+        final FloatVector c1Z = FloatVector.fromArray(FLOATS, batch.codesZ, LANES);
+        final FloatVector c2X = FloatVector.fromArray(FLOATS, batch.codesX, mid * LANES);
+        final FloatVector c2Y = FloatVector.fromArray(FLOATS, batch.codesY, mid * LANES);
+        final FloatVector c2Z = FloatVector.fromArray(FLOATS, batch.codesZ, mid * LANES);
+        final FloatVector c3X = FloatVector.fromArray(FLOATS, batch.codesX, 3 * LANES);
+        final FloatVector c3Y = FloatVector.fromArray(FLOATS, batch.codesY, 3 * LANES);
+        final FloatVector c3Z = FloatVector.fromArray(FLOATS, batch.codesZ, 3 * LANES);
+
+        final IntVector counts = IntVector.fromArray(INTS, batch.counts, 0);
+        FloatVector error = FloatVector.zero(FLOATS);
+        for ( int i = 0; i < batch.maxCount; ++i ) {
+            final FloatVector x = FloatVector.fromArray(FLOATS, batch.pointsX, i * LANES);
+            final FloatVector y = FloatVector.fromArray(FLOATS, batch.pointsY, i * LANES);
+            final FloatVector z = FloatVector.fromArray(FLOATS, batch.pointsZ, i * LANES);
+
+            // find the closest code
+            FloatVector least = distance(x, y, z, c0X, c0Y, c0Z, metric);
+            IntVector index = IntVector.zero(INTS);
+
+            FloatVector d = distance(x, y, z, c1X, c1Y, c1Z, metric);
+            VectorMask<Float> closer = d.lt(least);
+            least = least.blend(d, closer);
+            index = index.blend(1, closer.cast(INTS));
+
+            d = distance(x, y, z, c2X, c2Y, c2Z, metric);
+            closer = d.lt(least);
+            least = least.blend(d, closer);
+            index = index.blend(2, closer.cast(INTS));
+
+            if ( codeCount == 4 ) {
+                d = distance(x, y, z, c3X, c3Y, c3Z, metric);
+                closer = d.lt(least);
+                least = least.blend(d, closer);
+                index = index.blend(3, closer.cast(INTS));
+            }
+
+            // save the indices and accumulate the errors of the actual points
+            index.intoArray(closest, i * LANES);
+            error = error.add(least, counts.compare(VectorOperators.GT, i).cast(FLOATS));
+        }
+        error.intoArray(errors, 0);
+    }
+
+    private static FloatVector distance(final FloatVector x, final FloatVector y, final FloatVector z,
+                                        final FloatVector cX, final FloatVector cY, final FloatVector cZ,
+                                        final CompressionMetric metric) {
+        final FloatVector dX = x.sub(cX).mul(metric.r);
+        final FloatVector dY = y.sub(cY).mul(metric.g);
+        final FloatVector dZ = z.sub(cZ).mul(metric.b);
+        return dX.mul(dX).add(dY.mul(dY)).add(dZ.mul(dZ));
+    }
+
+    @Override
+    public void fitAlpha(final RangeBatch batch) {
+        IntVector error5 = IntVector.zero(INTS);
+        IntVector error7 = IntVector.zero(INTS);
+        for ( int i = 0; i < 16; ++i ) {
+            final IntVector value = IntVector.fromArray(INTS, batch.alphas, i * LANES);
+
+            // find the least errors and corresponding indices
+            IntVector least5 = square(value.sub(IntVector.fromArray(INTS, batch.codes5, 0)));
+            IntVector least7 = square(value.sub(IntVector.fromArray(INTS, batch.codes7, 0)));
+            IntVector index5 = IntVector.zero(INTS);
+            IntVector index7 = IntVector.zero(INTS);
+            for ( int j = 1; j < 8; ++j ) {
+                final IntVector dist5 = square(value.sub(IntVector.fromArray(INTS, batch.codes5, j * LANES)));
+                final IntVector dist7 = square(value.sub(IntVector.fromArray(INTS, batch.codes7, j * LANES)));
+                final VectorMask<Integer> closer5 = dist5.lt(least5);
+                final VectorMask<Integer> closer7 = dist7.lt(least7);
+                least5 = least5.blend(dist5, closer5);
+                index5 = index5.blend(j, closer5);
+                least7 = least7.blend(dist7, closer7);
+                index7 = index7.blend(j, closer7);
+            }
+
+            // use the first code for pixels outside the image
+            final VectorMask<Integer> valid = value.lt(0).not();
+            index5.blend(0, valid.not()).intoArray(batch.indices5, i * LANES);
+            index7.blend(0, valid.not()).intoArray(batch.indices7, i * LANES);
+            error5 = error5.add(least5, valid);
+            error7 = error7.add(least7, valid);
+        }
+        error5.intoArray(batch.error5, 0);
+        error7.intoArray(batch.error7, 0);
+    }
+
+    private static IntVector square(final IntVector v) {
+        return v.mul(v);
+    }
+
+}
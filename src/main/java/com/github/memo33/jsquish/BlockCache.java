@@ -0,0 +1,120 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A bounded cache of compressed blocks, keyed on the source pixels of the
+// block. Least recently used blocks are evicted first.
+final class BlockCache {
+
+    private static final class Key {
+
+        private final byte[] rgba = new byte[16 * 4];
+        private int mask;
+        private int hash;
+
+        // copies the enabled pixels, clearing the others as they do not affect the compressed block
+        void set(final byte[] rgba, final int mask) {
+            for ( int i = 0; i < 16; ++i ) {
+                final boolean enabled = (mask & (1 << i)) != 0;
+                for ( int j = 4 * i; j < 4 * i + 4; ++j )
+                    this.rgba[j] = enabled ? rgba[j] : 0;
+            }
+            this.mask = mask;
+            this.hash = 31 * Arrays.hashCode(this.rgba) + mask;
+        }
+
+        Key copy() {
+            final Key key = new Key();
+            System.arraycopy(rgba, 0, key.rgba, 0, rgba.length);
+            key.mask = mask;
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if ( !(obj instanceof Key) )
+                return false;
+            final Key other = (Key)obj;
+            return mask == other.mask && Arrays.equals(rgba, other.rgba);
+        }
+    }
+
+    private final int blockSize;
+    private final Map<Key, byte[]> blocks;
+
+    // the key of the most recent lookup
+    private final Key probe = new Key();
+
+    private long hits;
+    private long misses;
+
+    BlockCache(final int maxBlocks, final int blockSize) {
+        this.blockSize = blockSize;
+        this.blocks = new LinkedHashMap<Key, byte[]>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, byte[]> eldest) {
+                return size() > maxBlocks;
+            }
+        };
+    }
+
+    // Copies the compressed block of the pixels to the target if it is
+    // cached and returns whether it was found.
+    boolean lookup(final byte[] rgba, final int mask, final byte[] block, final int offset) {
+        probe.set(rgba, mask);
+        final byte[] cached = blocks.get(probe);
+        if ( cached == null ) {
+            ++misses;
+            return false;
+        }
+        System.arraycopy(cached, 0, block, offset, blockSize);
+        ++hits;
+        return true;
+    }
+
+    // stores the compressed block of the pixels of the most recent failed lookup
+    void store(final byte[] block, final int offset) {
+        blocks.put(probe.copy(), Arrays.copyOfRange(block, offset, offset + blockSize));
+    }
+
+    long getHits() { return hits; }
+
+    long getMisses() { return misses; }
+
+}
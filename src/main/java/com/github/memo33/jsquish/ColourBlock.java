@@ -122,6 +122,19 @@ final class ColourBlock {
         writeColourBlock(a, b, remapped, block, offset);
     }
 
+    // writes a block in which all pixels use the transparent index of the 3-colour mode
+    static void writeTransparentBlock(final byte[] block, final int offset) {
+        // both endpoints are black
+        block[offset + 0] = 0;
+        block[offset + 1] = 0;
+        block[offset + 2] = 0;
+        block[offset + 3] = 0;
+
+        // all indices are 3
+        for ( int i = 0; i < 4; ++i )
+            block[offset + 4 + i] = (byte)0xff;
+    }
+
     void decompressColour(final byte[] rgba, final byte[] block, final int offset, final boolean isDXT1) {
         // unpack the endpoints
         final int a = unpack565(block, offset, codes, 0);
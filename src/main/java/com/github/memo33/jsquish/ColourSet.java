@@ -32,16 +32,14 @@ final class ColourSet {
 
     private int count;
 
-    private final Vec[] points = new Vec[16];
+    // the points as consecutive x, y, z coordinates
+    private final float[] points = new float[16 * 3];
     private final float[] weights = new float[16];
     private final int[] remap = new int[16];
 
     private boolean transparent;
 
-    ColourSet() {
-        for ( int i = 0; i < points.length; i++ )
-            points[i] = new Vec();
-    }
+    ColourSet() {}
 
     void init(final byte[] rgba, final int mask, final CompressionType type, final boolean weightAlpha) {
         // check the compression mode for dxt1
@@ -76,7 +74,9 @@ final class ColourSet {
                     final float b = (rgba[4 * i + 2] & 0xFF) / 255.0f;
 
                     // add the point
-                    points[count].set(r, g, b);
+                    points[3 * count] = r;
+                    points[3 * count + 1] = g;
+                    points[3 * count + 2] = b;
                     // ensure there is always non-zero weight even for zero alpha
                     weights[count] = (weightAlpha ? ((rgba[4 * i + 3] & 0xFF) + 1) / 256.0f : 1.0f);
                     remap[i] = count++; // advance
@@ -107,7 +107,7 @@ final class ColourSet {
 
     int getCount() { return count; }
 
-    Vec[] getPoints() { return points; }
+    float[] getPoints() { return points; }
 
     float[] getWeights() { return weights; }
 
@@ -118,7 +118,7 @@ final class CompressorAlpha {
         return err;
     }
 
-    private void writeAlphaBlock(final int alpha0, final int alpha1, final int[] indices, final byte[] block, final int offset) {
+    void writeAlphaBlock(final int alpha0, final int alpha1, final int[] indices, final byte[] block, final int offset) {
         // write the first two bytes
         block[offset + 0] = (byte)alpha0;
         block[offset + 1] = (byte)alpha1;
@@ -140,7 +140,7 @@ final class CompressorAlpha {
         }
     }
 
-    private void writeAlphaBlock5(final int alpha0, final int alpha1, final int[] indices, final byte[] block, final int offset) {
+    void writeAlphaBlock5(final int alpha0, final int alpha1, final int[] indices, final byte[] block, final int offset) {
         // check the relative values of the endpoints
         if ( alpha0 > alpha1 ) {
             // swap the indices
@@ -164,7 +164,7 @@ final class CompressorAlpha {
         }
     }
 
-    private void writeAlphaBlock7(final int alpha0, final int alpha1, final int[] indices, final byte[] block, final int offset) {
+    void writeAlphaBlock7(final int alpha0, final int alpha1, final int[] indices, final byte[] block, final int offset) {
         // check the relative values of the endpoints
         if ( alpha0 < alpha1 ) {
             // swap the indices
@@ -222,6 +222,15 @@ final class CompressorAlpha {
         if ( max5 - min5 < 5 )
             min5 = max(0, max5 - 5);
 
+        // the alpha is uniformly 0 or 255, so the 5-alpha code book would
+        // win with the range [0, 5] and the codes 0 and 255 for each pixel
+        if ( max7 == 0 || min7 == 255 ) {
+            for ( int i = 0; i < 16; ++i )
+                indices5[i] = (max7 != 0 && (mask & (1 << i)) != 0) ? 7 : 0;
+            writeAlphaBlock(0, 5, indices5, block, offset);
+            return;
+        }
+
         if ( max7 - min7 < 7 )
             max7 = min(min7 + 7, 255);
         if ( max7 - min7 < 7 )
@@ -26,45 +26,71 @@
 
 package io.github.memo33.jsquish;
 
+import java.util.Arrays;
+
 import io.github.memo33.jsquish.Squish.CompressionType;
+import io.github.memo33.jsquish.Squish.AxisSolver;
 import io.github.memo33.jsquish.Squish.CompressionMetric;
+import io.github.memo33.jsquish.Squish.CompressionQuality;
 
 /* Compared to the original code, we improve the performance by iterating
  * only over clusters that are similar to a canonical cluster choice,
  * which saves about 50% of total iterations (number of least squares
  * problems). This makes subiterations shorter, but on average a bit deeper,
- * so we increase MAX_ITERATIONS a bit (this bound is rarely reached anyway).
+ * so we increase the number of iterations a bit (this bound is rarely
+ * reached anyway). The quality narrows the search further, or widens it
+ * to all partitions again.
  *
  * As the number of iterations is reduced, the error might increase
  * slightly (usually less than 0.1%) by running into a different local
  * minimum.
+ *
+ * As in newer versions of libsquish, the points are summed up along the
+ * ordering once, so that the least squares problem of each partition can
+ * be set up from the differences of these prefix sums in constant time.
  */
 final class CompressorCluster extends CompressorColourFit {
 
-    private static final int MAX_ITERATIONS = 10;
-
-    private final int[] indices = new int[16];
     private final int[] bestIndices = new int[16];
     private final int[] unordered = new int[16];
-    private final int[] orders = new int[16 * MAX_ITERATIONS];
+    private final int[] orders;
 
-    private final float[] alpha = new float[16];
-    private final float[] beta = new float[16];
-    private final float[] weights = new float[16];
-    private final float[] weighted = new float[16 * 3];
+    // prefix sums of the squared weights and of the weighted points along the ordering
+    private final float[] weightSums = new float[16 + 1];
+    private final float[] weightedSums = new float[(16 + 1) * 3];
 
     private final CompressionMetric metric;
+    private final AxisSolver solver;
     private final ColourBlock colourBlockWriter;
-    private final Vec xxSum = new Vec();
-
-    private Vec principle;
+    private float xxSumX, xxSumY, xxSumZ;
+
+    // scratch space, so that compressing a block does not allocate
+    private final Matrix covariance = new Matrix();
+    private final Vec principle = new Vec();
+    private final Vec bestStart = new Vec();
+    private final Vec bestEnd = new Vec();
+    private final float[] dps = new float[16];
+    private final int[] cluster3 = new int[3];
+    private final int[] cluster4 = new int[4];
+    private final float[] bounds = new float[4];
+    private final PartitionBatch batch = new PartitionBatch();
+    private final int[] partitions = new int[3 * PartitionBatch.CAPACITY];
     private float totalBestError;
 
-    CompressorCluster(final ColourSet colours, final CompressionType type, final CompressionMetric metric, final ColourBlock writer) {
-        super(colours, type);
+    // optional axis to order the points along instead of the principle component,
+    // used once by the next init, and the axis of the best fit of the last block
+    private final Vec startAxis = new Vec();
+    private final Vec bestAxis = new Vec();
+
+    CompressorCluster(final ColourSet colours, final CompressionType type, final CompressionMetric metric, final AxisSolver solver,
+                      final CompressionQuality quality, final ColourBlock writer) {
+        super(colours, type, quality);
+        this.orders = new int[16 * quality.iterations];
         // initialise the metric
         this.metric = metric;
 
+        this.solver = solver;
+
         this.colourBlockWriter = writer;
     }
 
@@ -72,65 +98,76 @@ final class CompressorCluster extends CompressorColourFit {
         // initialise the best error
         totalBestError = Float.MAX_VALUE;
 
-        // get the covariance matrix
-        final Matrix covariance = Matrix.computeWeightedCovariance(colours, null);
+        if ( startAxis.x() != 0.0f || startAxis.y() != 0.0f || startAxis.z() != 0.0f ) {
+            // start from the given axis
+            principle.set(startAxis);
+            startAxis.set(0.0f);
+        } else {
+            // get the covariance matrix
+            Matrix.computeWeightedCovariance(colours, covariance);
+
+            // compute the principle component
+            solver.computePrincipleComponent(covariance, principle);
+        }
+        bestAxis.set(principle);
+    }
 
-        // compute the principle component
-        principle = Matrix.computePrincipleComponent(covariance);
+    // Sets the axis (e.g. of the co-located block of a previous frame) to
+    // start the ordering of the next block from, instead of computing its
+    // principle component; a zero axis means no start axis. Also clears
+    // the best axis, so that it stays zero unless the next block is fitted.
+    void setStartAxis(final float[] axes, final int offset) {
+        startAxis.set(axes[offset], axes[offset + 1], axes[offset + 2]);
+        bestAxis.set(0.0f);
+    }
+
+    // Gets the axis between the endpoints of the best fit of the last block.
+    void getBestAxis(final float[] axes, final int offset) {
+        axes[offset] = bestAxis.x();
+        axes[offset + 1] = bestAxis.y();
+        axes[offset + 2] = bestAxis.z();
     }
 
     void compress3(final byte[] block, final int offset) {
         final int count = colours.getCount();
 
-        final Vec bestStart = new Vec(0.0f);
-        final Vec bestEnd = new Vec(0.0f);
+        bestStart.set(0.0f);
+        bestEnd.set(0.0f);
         float bestError = this.totalBestError;
-
-        final Vec a = new Vec();
-        final Vec b = new Vec();
+        int bestI = 0;
+        int bestJ = 0;
 
         // prepare an ordering using the principle axis
-        int[] canonical = constructOrderingAndCanonicalCluster(principle, 0, false);
+        int[] canonical = constructOrderingAndCanonicalCluster(principle.x(), principle.y(), principle.z(), 0, false);
 
         // check all possible clusters and iterate on the total order
         // (instead of checking all clusters, we only check those that
         // are similar to the canonical one - saves about >50% of iterations)
         int bestIteration = 0;
         for ( int iteration = 0; ; ) {
-            // first cluster [0,i) is at the start
-            for ( int m = 0; m < count; ++m ) {
-                indices[m] = 0;
-                alpha[m] = weights[m];
-                beta[m] = 0.0f;
-            }
-            for (int x = -canonical[1]; x <= canonical[0]; x++) {
-                int i = canonical[0] - x;
-                // second cluster [i,j) is half along
-                for ( int m = i; m < count; ++m ) {
-                    indices[m] = 2;
-                    alpha[m] = beta[m] = 0.5f * weights[m];
+            final int p1 = canonical[0];
+            final int p2 = p1 + canonical[1];
+            batch.size = 0;
+            for (int i = upperBoundary(p1, p2, count); i >= lowerBoundary(0, p1); i--) {
+                // first cluster [0,i) is at the start
+                for (int j = upperBoundary(p2, count, count); j >= i && j >= lowerBoundary(p1, p2); j--) {
+                    // second cluster [i,j) is half along,
+                    // last cluster [j,count) is at the end
+
+                    // set up a least squares problem to place the endpoints
+                    addPartition3(i, j, count);
+                    partitions[2 * batch.size - 2] = i;
+                    partitions[2 * batch.size - 1] = j;
                 }
-                for (int y = -canonical[2]; y <= canonical[1] && y <= canonical[1]+x; y++) {
-                    int j = i + canonical[1] + x - y;
-                    // last cluster [j,k) is at the end
-                    if ( j < count ) {
-                        indices[j] = 1;
-                        alpha[j] = 0.0f;
-                        beta[j] = weights[j];
-                    }
-
-                    // solve a least squares problem to place the endpoints
-                    final float error = solveLeastSquares(a, b);
+            }
 
-                    // keep the solution if it wins
-                    if ( error < bestError ) {
-                        bestStart.set(a);
-                        bestEnd.set(b);
-                        System.arraycopy(indices, 0, bestIndices, 0, 16);
-                        bestError = error;
-                        bestIteration = iteration;
-                    }
-                }
+            // solve them all at once and keep the solution if it wins
+            final int best = solveBatch(bestError);
+            if ( best >= 0 ) {
+                bestError = batch.solve(best, xxSumX, xxSumY, xxSumZ, metric, bestStart, bestEnd);
+                bestI = partitions[2 * best];
+                bestJ = partitions[2 * best + 1];
+                bestIteration = iteration;
             }
 
             // stop if we didn't improve in this iteration
@@ -138,11 +175,11 @@ final class CompressorCluster extends CompressorColourFit {
                 break;
 
             // advance if possible
-            if ( ++iteration == MAX_ITERATIONS )
+            if ( ++iteration == quality.iterations )
                 break;
 
             // stop if a new iteration is an ordering that has already been tried
-            canonical = constructOrderingAndCanonicalCluster(a.set(bestEnd).sub(bestStart), iteration, false);
+            canonical = constructOrderingAndCanonicalCluster(bestEnd.x() - bestStart.x(), bestEnd.y() - bestStart.y(), bestEnd.z() - bestStart.z(), iteration, false);
             if (canonical == null)
                 break;
         }
@@ -153,11 +190,12 @@ final class CompressorCluster extends CompressorColourFit {
             final int order = 16 * bestIteration;
 
             for ( int i = 0; i < count; ++i )
-                unordered[orders[order + i]] = bestIndices[i];
+                unordered[orders[order + i]] = i < bestI ? 0 : i < bestJ ? 2 : 1;
             colours.remapIndices(unordered, bestIndices);
 
             // save the block
             colourBlockWriter.writeColourBlock3(bestStart, bestEnd, bestIndices, block, offset);
+            bestAxis.set(bestEnd).sub(bestStart);
 
             // save the error
             this.totalBestError = bestError;
@@ -168,78 +206,63 @@ final class CompressorCluster extends CompressorColourFit {
     void compress4(final byte[] block, final int offset) {
         final int count = colours.getCount();
 
-        final Vec bestStart = new Vec(0.0f);
-        final Vec bestEnd = new Vec(0.0f);
+        bestStart.set(0.0f);
+        bestEnd.set(0.0f);
         float bestError = this.totalBestError;
-
-        final Vec start = new Vec();
-        final Vec end = new Vec();
+        int bestI = 0;
+        int bestJ = 0;
+        int bestK = 0;
 
         // prepare an ordering using the principle axis
-        int[] canonical = constructOrderingAndCanonicalCluster(principle, 0, true);
+        int[] canonical = constructOrderingAndCanonicalCluster(principle.x(), principle.y(), principle.z(), 0, true);
 
         // check all possible clusters and iterate on the total order
         // (instead of checking all clusters, we only check those that
         // are similar to the canonical one - saves about >50% of iterations)
         int bestIteration = 0;
         for ( int iteration = 0; ; ) {
-            // first cluster [0,i) is at the start
-            for ( int m = 0; m < count; ++m ) {
-                indices[m] = 0;
-                alpha[m] = weights[m];
-                beta[m] = 0.0f;
-            }
-            for (int x = -canonical[1]; x <= canonical[0]; x++) {
-                int i = canonical[0] - x;
-                // second cluster [i,j) is one third along
-                for ( int m = i; m < count; ++m ) {
-                    indices[m] = 2;
-                    alpha[m] = (2.0f / 3.0f) * weights[m];
-                    beta[m] = (1.0f / 3.0f) * weights[m];
-                }
-                for (int y = -canonical[2]; y <= canonical[1] && y <= canonical[1]+x; y++) {
-                    int j = i + canonical[1] + x - y;
-                    // third cluster [j,k) is two thirds along
-                    for ( int m = j; m < count; ++m ) {
-                        indices[m] = 3;
-                        alpha[m] = (1.0f / 3.0f) * weights[m];
-                        beta[m] = (2.0f / 3.0f) * weights[m];
-                    }
-                    for (int z = -canonical[3]; z <= canonical[2] && z <= canonical[2]+y; z++) {
-                        int k = j + canonical[2] + y - z;
-                        // last cluster [k,n) is at the end
-                        if ( k < count ) {
-                            indices[k] = 1;
-                            alpha[k] = 0.0f;
-                            beta[k] = weights[k];
-                        }
-
-                        // solve a least squares problem to place the endpoints
-                        final float error = solveLeastSquares(start, end);
-
-                        // keep the solution if it wins
-                        if ( error < bestError ) {
-                            bestStart.set(start);
-                            bestEnd.set(end);
-                            System.arraycopy(indices, 0, bestIndices, 0, 16);
-                            bestError = error;
-                            bestIteration = iteration;
-                        }
+            final int p1 = canonical[0];
+            final int p2 = p1 + canonical[1];
+            final int p3 = p2 + canonical[2];
+            batch.size = 0;
+            for (int i = upperBoundary(p1, p2, count); i >= lowerBoundary(0, p1); i--) {
+                // first cluster [0,i) is at the start
+                for (int j = upperBoundary(p2, p3, count); j >= i && j >= lowerBoundary(p1, p2); j--) {
+                    // second cluster [i,j) is one third along
+                    for (int k = upperBoundary(p3, count, count); k >= j && k >= lowerBoundary(p2, p3); k--) {
+                        // third cluster [j,k) is two thirds along,
+                        // last cluster [k,count) is at the end
+
+                        // set up a least squares problem to place the endpoints
+                        addPartition4(i, j, k, count);
+                        partitions[3 * batch.size - 3] = i;
+                        partitions[3 * batch.size - 2] = j;
+                        partitions[3 * batch.size - 1] = k;
                     }
                 }
             }
 
+            // solve them all at once and keep the solution if it wins
+            final int best = solveBatch(bestError);
+            if ( best >= 0 ) {
+                bestError = batch.solve(best, xxSumX, xxSumY, xxSumZ, metric, bestStart, bestEnd);
+                bestI = partitions[3 * best];
+                bestJ = partitions[3 * best + 1];
+                bestK = partitions[3 * best + 2];
+                bestIteration = iteration;
+            }
+
             // stop if we didn't improve in this iteration
             if ( bestIteration != iteration )
                 break;
 
             // advance if possible
             ++iteration;
-            if ( iteration == MAX_ITERATIONS )
+            if ( iteration == quality.iterations )
                 break;
 
             // stop if a new iteration is an ordering that has already been tried
-            canonical = constructOrderingAndCanonicalCluster(start.set(bestEnd).sub(bestStart), iteration, true);
+            canonical = constructOrderingAndCanonicalCluster(bestEnd.x() - bestStart.x(), bestEnd.y() - bestStart.y(), bestEnd.z() - bestStart.z(), iteration, true);
             if (canonical == null)
                 break;
         }
@@ -249,11 +272,12 @@ final class CompressorCluster extends CompressorColourFit {
             // remap the indices
             final int order = 16 * bestIteration;
             for ( int i = 0; i < count; ++i )
-                unordered[orders[order + i]] = bestIndices[i];
+                unordered[orders[order + i]] = i < bestI ? 0 : i < bestJ ? 2 : i < bestK ? 3 : 1;
             colours.remapIndices(unordered, bestIndices);
 
             // save the block
             colourBlockWriter.writeColourBlock4(bestStart, bestEnd, bestIndices, block, offset);
+            bestAxis.set(bestEnd).sub(bestStart);
 
             // save the error
             this.totalBestError = bestError;
@@ -261,16 +285,15 @@ final class CompressorCluster extends CompressorColourFit {
         }
     }
 
-    private int[] constructOrderingAndCanonicalCluster(final Vec axis, final int iteration, boolean isComp4) {
+    private int[] constructOrderingAndCanonicalCluster(final float axisX, final float axisY, final float axisZ, final int iteration, boolean isComp4) {
         // cache some values
         final int count = colours.getCount();
-        final Vec[] values = colours.getPoints();
+        final float[] points = colours.getPoints();
 
         // build the list of dot products
-        final float[] dps = new float[16];
         final int order = 16 * iteration;
         for ( int i = 0; i < count; ++i ) {
-            dps[i] = values[i].dot(axis);
+            dps[i] = points[3 * i] * axisX + points[3 * i + 1] * axisY + points[3 * i + 2] * axisZ;
             orders[order + i] = i;
         }
 
@@ -301,43 +324,54 @@ final class CompressorCluster extends CompressorColourFit {
                 return null;
         }
 
-        // copy the ordering and weight all the points
-        final Vec[] points = colours.getPoints();
+        // copy the ordering, weight all the points and sum them up along the ordering
         final float[] cWeights = colours.getWeights();
-        xxSum.set(0.0f);
+        xxSumX = xxSumY = xxSumZ = 0.0f;
+
+        weightSums[0] = 0.0f;
+        weightedSums[0] = weightedSums[1] = weightedSums[2] = 0.0f;
 
         for ( int i = 0, j = 0; i < count; ++i, j += 3 ) {
             final int p = orders[order + i];
 
             final float weight = cWeights[p];
-            final Vec point = points[p];
-
-            weights[i] = weight;
 
-            final float wX = weight * point.x();
-            final float wY = weight * point.y();
-            final float wZ = weight * point.z();
+            final float wX = weight * points[3 * p];
+            final float wY = weight * points[3 * p + 1];
+            final float wZ = weight * points[3 * p + 2];
 
-            xxSum.add(wX * wX, wY * wY, wZ * wZ);
+            xxSumX += wX * wX;
+            xxSumY += wY * wY;
+            xxSumZ += wZ * wZ;
 
-            weighted[j + 0] = wX;
-            weighted[j + 1] = wY;
-            weighted[j + 2] = wZ;
+            weightSums[i + 1] = weightSums[i] + weight * weight;
+            weightedSums[j + 3] = weightedSums[j + 0] + weight * wX;
+            weightedSums[j + 4] = weightedSums[j + 1] + weight * wY;
+            weightedSums[j + 5] = weightedSums[j + 2] + weight * wZ;
         }
         return canonicalCluster(dps, count, isComp4);
     }
 
-    private static int[] canonicalCluster(float[] dps, int count, boolean isComp4) {
-        final int[] cluster = new int[isComp4 ? 4 : 3];
+    private int[] canonicalCluster(float[] dps, int count, boolean isComp4) {
+        final int[] cluster = isComp4 ? cluster4 : cluster3;
+        Arrays.fill(cluster, 0);
         if (count == 0) return cluster;
         // comp3:                           comp4:
         // |...o...|...*...|...o...|        |...o...|...*...|...*...|...o...|
         // a   0      1/2      1   b        a   0      1/3     2/3      1   b
         final float a = dps[0];
         final float b = dps[count - 1];
-        final float[] c = isComp4
-            ? new float[] { (3 * a + b) / 4, (a + b) / 2, (a + 3 * b) / 4, b }
-            : new float[] { (2 * a + b) / 3, (a + 2 * b) / 3, b };
+        final float[] c = bounds;
+        if (isComp4) {
+            c[0] = (3 * a + b) / 4;
+            c[1] = (a + b) / 2;
+            c[2] = (a + 3 * b) / 4;
+            c[3] = b;
+        } else {
+            c[0] = (2 * a + b) / 3;
+            c[1] = (a + 2 * b) / 3;
+            c[2] = b;
+        }
         for (int i = 0, j = 0; i < count; i++) {
             while (dps[i] > c[j])
                 j++;
@@ -346,92 +380,83 @@ final class CompressorCluster extends CompressorColourFit {
         return cluster;
     }
 
-    private float solveLeastSquares(final Vec start, final Vec end) {
-        final int count = colours.getCount();
-
-        float alpha2_sum = 0.0f;
-        float beta2_sum = 0.0f;
-        float alphabeta_sum = 0.0f;
-
-        float alphax_sumX = 0f;
-        float alphax_sumY = 0f;
-        float alphax_sumZ = 0f;
-
-        float betax_sumX = 0f;
-        float betax_sumY = 0f;
-        float betax_sumZ = 0f;
-
-        // accumulate all the quantities we need
-        for ( int i = 0, j = 0; i < count; ++i, j += 3 ) {
-            final float a = alpha[i];
-            final float b = beta[i];
-
-            alpha2_sum += a * a;
-            beta2_sum += b * b;
-            alphabeta_sum += a * b;
-
-            alphax_sumX += weighted[j + 0] * a;
-            alphax_sumY += weighted[j + 1] * a;
-            alphax_sumZ += weighted[j + 2] * a;
-
-            betax_sumX += weighted[j + 0] * b;
-            betax_sumY += weighted[j + 1] * b;
-            betax_sumZ += weighted[j + 2] * b;
-        }
-
-        float aX, aY, aZ;
-        float bX, bY, bZ;
-
-        // zero where non-determinate
-        if ( beta2_sum == 0.0f ) {
-            final float rcp = 1.0f / alpha2_sum;
-
-            aX = alphax_sumX * rcp;
-            aY = alphax_sumY * rcp;
-            aZ = alphax_sumZ * rcp;
-            bX = bY = bZ = 0.0f;
-        } else if ( alpha2_sum == 0.0f ) {
-            final float rcp = 1.0f / beta2_sum;
-
-            aX = aY = aZ = 0.0f;
-            bX = betax_sumX * rcp;
-            bY = betax_sumY * rcp;
-            bZ = betax_sumZ * rcp;
-        } else {
-            final float rcp = 1.0f / (alpha2_sum * beta2_sum - alphabeta_sum * alphabeta_sum);
-            if ( rcp == (1.0f / 0.0f) ) // Detect Infinity
-                return Float.MAX_VALUE;
+    // sets up the least squares problem for the clusters [0,i), [i,j), [j,count)
+    private void addPartition3(final int i, final int j, final int count) {
+        // sum up the clusters
+        final float w0 = weightSums[i];
+        final float w1 = weightSums[j] - weightSums[i];
+        final float w2 = weightSums[count] - weightSums[j];
+
+        final int i3 = 3 * i, j3 = 3 * j, count3 = 3 * count;
+        final float x0X = weightedSums[i3 + 0];
+        final float x0Y = weightedSums[i3 + 1];
+        final float x0Z = weightedSums[i3 + 2];
+        final float x1X = weightedSums[j3 + 0] - x0X;
+        final float x1Y = weightedSums[j3 + 1] - x0Y;
+        final float x1Z = weightedSums[j3 + 2] - x0Z;
+        final float x2X = weightedSums[count3 + 0] - weightedSums[j3 + 0];
+        final float x2Y = weightedSums[count3 + 1] - weightedSums[j3 + 1];
+        final float x2Z = weightedSums[count3 + 2] - weightedSums[j3 + 2];
+
+        // the clusters are weighted by (1, 0), (1/2, 1/2), (0, 1)
+        batch.add(
+                w0 + 0.25f * w1,
+                0.25f * w1 + w2,
+                0.25f * w1,
+                x0X + 0.5f * x1X, x0Y + 0.5f * x1Y, x0Z + 0.5f * x1Z,
+                0.5f * x1X + x2X, 0.5f * x1Y + x2Y, 0.5f * x1Z + x2Z);
+    }
 
-            aX = (alphax_sumX * beta2_sum - betax_sumX * alphabeta_sum) * rcp;
-            aY = (alphax_sumY * beta2_sum - betax_sumY * alphabeta_sum) * rcp;
-            aZ = (alphax_sumZ * beta2_sum - betax_sumZ * alphabeta_sum) * rcp;
+    // sets up the least squares problem for the clusters [0,i), [i,j), [j,k), [k,count)
+    private void addPartition4(final int i, final int j, final int k, final int count) {
+        // sum up the clusters
+        final float w0 = weightSums[i];
+        final float w1 = weightSums[j] - weightSums[i];
+        final float w2 = weightSums[k] - weightSums[j];
+        final float w3 = weightSums[count] - weightSums[k];
+
+        final int i3 = 3 * i, j3 = 3 * j, k3 = 3 * k, count3 = 3 * count;
+        final float x0X = weightedSums[i3 + 0];
+        final float x0Y = weightedSums[i3 + 1];
+        final float x0Z = weightedSums[i3 + 2];
+        final float x1X = weightedSums[j3 + 0] - x0X;
+        final float x1Y = weightedSums[j3 + 1] - x0Y;
+        final float x1Z = weightedSums[j3 + 2] - x0Z;
+        final float x2X = weightedSums[k3 + 0] - weightedSums[j3 + 0];
+        final float x2Y = weightedSums[k3 + 1] - weightedSums[j3 + 1];
+        final float x2Z = weightedSums[k3 + 2] - weightedSums[j3 + 2];
+        final float x3X = weightedSums[count3 + 0] - weightedSums[k3 + 0];
+        final float x3Y = weightedSums[count3 + 1] - weightedSums[k3 + 1];
+        final float x3Z = weightedSums[count3 + 2] - weightedSums[k3 + 2];
+
+        // the clusters are weighted by (1, 0), (2/3, 1/3), (1/3, 2/3), (0, 1)
+        batch.add(
+                w0 + (4.0f / 9.0f) * w1 + (1.0f / 9.0f) * w2,
+                (1.0f / 9.0f) * w1 + (4.0f / 9.0f) * w2 + w3,
+                (2.0f / 9.0f) * (w1 + w2),
+                x0X + (2.0f / 3.0f) * x1X + (1.0f / 3.0f) * x2X,
+                x0Y + (2.0f / 3.0f) * x1Y + (1.0f / 3.0f) * x2Y,
+                x0Z + (2.0f / 3.0f) * x1Z + (1.0f / 3.0f) * x2Z,
+                (1.0f / 3.0f) * x1X + (2.0f / 3.0f) * x2X + x3X,
+                (1.0f / 3.0f) * x1Y + (2.0f / 3.0f) * x2Y + x3Y,
+                (1.0f / 3.0f) * x1Z + (2.0f / 3.0f) * x2Z + x3Z);
+    }
 
-            bX = (betax_sumX * alpha2_sum - alphax_sumX * alphabeta_sum) * rcp;
-            bY = (betax_sumY * alpha2_sum - alphax_sumY * alphabeta_sum) * rcp;
-            bZ = (betax_sumZ * alpha2_sum - alphax_sumZ * alphabeta_sum) * rcp;
+    // evaluates the partitions of the batch and returns the one with the
+    // least error below the given one (the first of equal ones), or -1 if
+    // there is none
+    private int solveBatch(float bestError) {
+        PartitionBatch.SOLVER.computeErrors(batch, xxSumX, xxSumY, xxSumZ, metric);
+
+        int best = -1;
+        final float[] errors = batch.errors;
+        for ( int p = 0; p < batch.size; ++p ) {
+            if ( errors[p] < bestError ) {
+                bestError = errors[p];
+                best = p;
+            }
         }
-
-        // clamp the output to [0, 1]
-        // clamp to the grid
-        aX = clamp(aX, GRID_X, GRID_X_RCP);
-        aY = clamp(aY, GRID_Y, GRID_Y_RCP);
-        aZ = clamp(aZ, GRID_Z, GRID_Z_RCP);
-
-        start.set(aX, aY, aZ);
-
-        bX = clamp(bX, GRID_X, GRID_X_RCP);
-        bY = clamp(bY, GRID_Y, GRID_Y_RCP);
-        bZ = clamp(bZ, GRID_Z, GRID_Z_RCP);
-
-        end.set(bX, bY, bZ);
-
-        // compute the error
-        final float eX = aX * aX * alpha2_sum + bX * bX * beta2_sum + xxSum.x() + 2.0f * (aX * bX * alphabeta_sum - aX * alphax_sumX - bX * betax_sumX);
-        final float eY = aY * aY * alpha2_sum + bY * bY * beta2_sum + xxSum.y() + 2.0f * (aY * bY * alphabeta_sum - aY * alphax_sumY - bY * betax_sumY);
-        final float eZ = aZ * aZ * alpha2_sum + bZ * bZ * beta2_sum + xxSum.z() + 2.0f * (aZ * bZ * alphabeta_sum - aZ * alphax_sumZ - bZ * betax_sumZ);
-
-        // apply the metric to the error term
-        return metric.dot(eX, eY, eZ);
+        return best;
     }
 
 }
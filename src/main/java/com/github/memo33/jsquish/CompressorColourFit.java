@@ -26,6 +26,7 @@
 
 package io.github.memo33.jsquish;
 
+import io.github.memo33.jsquish.Squish.CompressionQuality;
 import io.github.memo33.jsquish.Squish.CompressionType;
 
 abstract class CompressorColourFit {
@@ -40,16 +41,26 @@ abstract class CompressorColourFit {
 
     protected final ColourSet colours;
     protected final CompressionType type;
+    protected final CompressionQuality quality;
 
     protected CompressorColourFit(final ColourSet colours, final CompressionType type) {
+        this(colours, type, CompressionQuality.NORMAL);
+    }
+
+    protected CompressorColourFit(final ColourSet colours, final CompressionType type, final CompressionQuality quality) {
         this.colours = colours;
         this.type = type;
+        this.quality = quality;
     }
 
     final void compress(final byte[] block, final int offset) {
         if ( type == CompressionType.DXT1 ) {
-            compress3(block, offset);
-            if ( !colours.isTransparent() ) {
+            // transparent blocks need the 3-colour mode
+            if ( colours.isTransparent() )
+                compress3(block, offset);
+            else {
+                if ( quality.bothModes )
+                    compress3(block, offset);
                 compress4(block, offset);
             }
         } else
@@ -64,6 +75,19 @@ abstract class CompressorColourFit {
 
     abstract void compress4(byte[] block, int offset);
 
+    // Gets the lowest position of a cluster boundary that the partition search
+    // checks, given the canonical positions of the boundary and of the one
+    // before: at most the window of the quality below the canonical position,
+    // and not below the previous canonical boundary unless it is exhaustive.
+    protected final int lowerBoundary(final int previous, final int canonical) {
+        return quality.exhaustive ? 0 : Math.max(previous, canonical - quality.window);
+    }
+
+    // the same for the highest position, given the next canonical boundary
+    protected final int upperBoundary(final int canonical, final int next, final int count) {
+        return quality.exhaustive ? count : Math.min(next, canonical + quality.window);
+    }
+
     protected static float clamp(final float v, final float GRID, final float GRID_RCP) {
         if ( v <= 0.0f )
             return 0.0f;
@@ -26,32 +26,41 @@
 
 package io.github.memo33.jsquish;
 
+import io.github.memo33.jsquish.Squish.AxisSolver;
 import io.github.memo33.jsquish.Squish.CompressionMetric;
+import io.github.memo33.jsquish.Squish.CompressionQuality;
 import io.github.memo33.jsquish.Squish.CompressionType;
 
 final class CompressorRange extends CompressorColourFit {
 
     private final int[] closest = new int[16];
     private final int[] indices = new int[16];
-    private final Vec[] codes = new Vec[4];
 
     private final CompressionMetric metric;
+    private final AxisSolver solver;
     private final ColourBlock colourBlockWriter;
+
+    // the endpoints of the codebook
+    private float startX, startY, startZ;
+    private float endX, endY, endZ;
+
+    // scratch space, so that compressing a block does not allocate
+    private final Matrix covariance = new Matrix();
+    private final Vec principle = new Vec();
     private final Vec start = new Vec();
     private final Vec end = new Vec();
 
     private float bestError;
 
-    CompressorRange(final ColourSet colours, final CompressionType type, final CompressionMetric metric, final ColourBlock writer) {
-        super(colours, type);
-
-        for ( int i = 0; i < codes.length; i++ ) {
-            codes[i] = new Vec();
-        }
+    CompressorRange(final ColourSet colours, final CompressionType type, final CompressionMetric metric, final AxisSolver solver,
+                    final CompressionQuality quality, final ColourBlock writer) {
+        super(colours, type, quality);
 
         // initialise the metric
         this.metric = metric;
 
+        this.solver = solver;
+
         this.colourBlockWriter = writer;
     }
 
@@ -61,13 +70,16 @@ final class CompressorRange extends CompressorColourFit {
 
         // cache some values
         final int count = this.colours.getCount();
-        final Vec[] points = this.colours.getPoints();
+        final float[] points = this.colours.getPoints();
 
         // get the covariance matrix
-        final Matrix covariance = Matrix.computeWeightedCovariance(colours, null);
+        Matrix.computeWeightedCovariance(colours, covariance);
 
         // compute the principle component
-        final Vec principle = Matrix.computePrincipleComponent(covariance);
+        solver.computePrincipleComponent(covariance, principle);
+        final float pX = principle.x();
+        final float pY = principle.y();
+        final float pZ = principle.z();
 
         // get the min and max range as the codebook endpoints
         if ( count > 0 ) {
@@ -77,76 +89,76 @@ final class CompressorRange extends CompressorColourFit {
             float min, max;
 
             // compute the range
-            aX = bX = points[0].x();
-            aY = bY = points[0].y();
-            aZ = bZ = points[0].z();
-            min = max = points[0].dot(principle);
+            aX = bX = points[0];
+            aY = bY = points[1];
+            aZ = bZ = points[2];
+            min = max = aX * pX + aY * pY + aZ * pZ;
             for ( int i = 1; i < count; ++i ) {
-                final Vec p = points[i];
-                final float val = p.dot(principle);
+                final float x = points[3 * i];
+                final float y = points[3 * i + 1];
+                final float z = points[3 * i + 2];
+                final float val = x * pX + y * pY + z * pZ;
 
                 if ( val < min ) {
-                    aX = p.x();
-                    aY = p.y();
-                    aZ = p.z();
+                    aX = x;
+                    aY = y;
+                    aZ = z;
 
                     min = val;
                 } else if ( val > max ) {
-                    bX = p.x();
-                    bY = p.y();
-                    bZ = p.z();
+                    bX = x;
+                    bY = y;
+                    bZ = z;
 
                     max = val;
                 }
             }
 
             // clamp the output to [0, 1] and to the grid
-            aX = clamp(aX, GRID_X, GRID_X_RCP);
-            aY = clamp(aY, GRID_Y, GRID_Y_RCP);
-            aZ = clamp(aZ, GRID_Z, GRID_Z_RCP);
+            startX = clamp(aX, GRID_X, GRID_X_RCP);
+            startY = clamp(aY, GRID_Y, GRID_Y_RCP);
+            startZ = clamp(aZ, GRID_Z, GRID_Z_RCP);
 
-            start.set(aX, aY, aZ);
-
-            bX = clamp(bX, GRID_X, GRID_X_RCP);
-            bY = clamp(bY, GRID_Y, GRID_Y_RCP);
-            bZ = clamp(bZ, GRID_Z, GRID_Z_RCP);
-
-            end.set(bX, bY, bZ);
+            endX = clamp(bX, GRID_X, GRID_X_RCP);
+            endY = clamp(bY, GRID_Y, GRID_Y_RCP);
+            endZ = clamp(bZ, GRID_Z, GRID_Z_RCP);
         }
     }
 
     void compress3(final byte[] block, final int offset) {
         // cache some values
         final int count = colours.getCount();
-        final Vec[] points = colours.getPoints();
+        final float[] points = colours.getPoints();
 
-        final Vec v = new Vec();
-
-        // create a codebook
-        codes[0].set(start);
-        codes[1].set(end);
-        codes[2].set(start).add(end).mul(0.5f);
+        // create a codebook of start, end and the midpoint
+        final float midX = (startX + endX) * 0.5f;
+        final float midY = (startY + endY) * 0.5f;
+        final float midZ = (startZ + endZ) * 0.5f;
 
         // match each point to the closest code
         float error = 0.0f;
         for ( int i = 0; i < count; ++i ) {
-            final Vec p = points[i];
+            final float x = points[3 * i];
+            final float y = points[3 * i + 1];
+            final float z = points[3 * i + 2];
 
             // find the closest code
             float dist = Float.MAX_VALUE;
             int index = 0;
-            for ( int j = 0; j < 3; ++j ) {
-                final Vec c = codes[j];
-                v.set(
-                        (p.x() - c.x()) * metric.r,
-                        (p.y() - c.y()) * metric.g,
-                        (p.z() - c.z()) * metric.b
-                );
-                final float d = v.lengthSQ();
-                if ( d < dist ) {
-                    dist = d;
-                    index = j;
-                }
+            float d = distance(x, y, z, startX, startY, startZ);
+            if ( d < dist ) {
+                dist = d;
+                index = 0;
+            }
+            d = distance(x, y, z, endX, endY, endZ);
+            if ( d < dist ) {
+                dist = d;
+                index = 1;
+            }
+            d = distance(x, y, z, midX, midY, midZ);
+            if ( d < dist ) {
+                dist = d;
+                index = 2;
             }
 
             // save the index
@@ -162,7 +174,7 @@ final class CompressorRange extends CompressorColourFit {
             colours.remapIndices(closest, indices);
 
             // save the block
-            colourBlockWriter.writeColourBlock3(start, end, indices, block, offset);
+            colourBlockWriter.writeColourBlock3(start.set(startX, startY, startZ), end.set(endX, endY, endZ), indices, block, offset);
 
             // save the error
             bestError = error;
@@ -172,36 +184,45 @@ final class CompressorRange extends CompressorColourFit {
     void compress4(final byte[] block, final int offset) {
         // cache some values
         final int count = colours.getCount();
-        final Vec[] points = colours.getPoints();
-
-        final Vec v = new Vec();
+        final float[] points = colours.getPoints();
 
-        // create a codebook
-        codes[0].set(start);
-        codes[1].set(end);
-        codes[2].set(2.0f / 3.0f).mul(start).add(v.set(1.0f / 3.0f).mul(end));
-        codes[3].set(1.0f / 3.0f).mul(start).add(v.set(2.0f / 3.0f).mul(end));
+        // create a codebook of start, end and the points one and two thirds along
+        final float code2X = 2.0f / 3.0f * startX + 1.0f / 3.0f * endX;
+        final float code2Y = 2.0f / 3.0f * startY + 1.0f / 3.0f * endY;
+        final float code2Z = 2.0f / 3.0f * startZ + 1.0f / 3.0f * endZ;
+        final float code3X = 1.0f / 3.0f * startX + 2.0f / 3.0f * endX;
+        final float code3Y = 1.0f / 3.0f * startY + 2.0f / 3.0f * endY;
+        final float code3Z = 1.0f / 3.0f * startZ + 2.0f / 3.0f * endZ;
 
         // match each point to the closest code
         float error = 0.0f;
         for ( int i = 0; i < count; ++i ) {
-            final Vec p = points[i];
+            final float x = points[3 * i];
+            final float y = points[3 * i + 1];
+            final float z = points[3 * i + 2];
 
             // find the closest code
             float dist = Float.MAX_VALUE;
             int index = 0;
-            for ( int j = 0; j < 4; ++j ) {
-                final Vec c = codes[j];
-                v.set(
-                        (p.x() - c.x()) * metric.r,
-                        (p.y() - c.y()) * metric.g,
-                        (p.z() - c.z()) * metric.b
-                );
-                final float d = v.lengthSQ();
-                if ( d < dist ) {
-                    dist = d;
-                    index = j;
-                }
+            float d = distance(x, y, z, startX, startY, startZ);
+            if ( d < dist ) {
+                dist = d;
+                index = 0;
+            }
+            d = distance(x, y, z, endX, endY, endZ);
+            if ( d < dist ) {
+                dist = d;
+                index = 1;
+            }
+            d = distance(x, y, z, code2X, code2Y, code2Z);
+            if ( d < dist ) {
+                dist = d;
+                index = 2;
+            }
+            d = distance(x, y, z, code3X, code3Y, code3Z);
+            if ( d < dist ) {
+                dist = d;
+                index = 3;
             }
 
             // save the index
@@ -217,11 +238,19 @@ final class CompressorRange extends CompressorColourFit {
             colours.remapIndices(closest, indices);
 
             // save the block
-            colourBlockWriter.writeColourBlock4(start, end, indices, block, offset);
+            colourBlockWriter.writeColourBlock4(start.set(startX, startY, startZ), end.set(endX, endY, endZ), indices, block, offset);
 
             // save the error
             bestError = error;
         }
     }
 
+    // the squared distance of the point to the code under the metric
+    private float distance(final float x, final float y, final float z, final float cX, final float cY, final float cZ) {
+        final float dX = (x - cX) * metric.r;
+        final float dY = (y - cY) * metric.g;
+        final float dZ = (z - cZ) * metric.b;
+        return dX * dX + dY * dY + dZ * dZ;
+    }
+
 }
@@ -59,10 +59,10 @@ final class CompressorSingleColour extends CompressorColourFit {
 
     void init() {
         // grab the single colour
-        final Vec colour = colours.getPoints()[0];
-        this.colour[0] = round(255.0f * colour.x());
-        this.colour[1] = round(255.0f * colour.y());
-        this.colour[2] = round(255.0f * colour.z());
+        final float[] points = colours.getPoints();
+        this.colour[0] = round(255.0f * points[0]);
+        this.colour[1] = round(255.0f * points[1]);
+        this.colour[2] = round(255.0f * points[2]);
 
         // initialise the best error
         totalBestError = Integer.MAX_VALUE;
@@ -0,0 +1,267 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Reads and writes DXT1, DXT3 and DXT5 compressed images with optional mip
+// maps in the DDS container format. A DDS file is read by memory-mapping it,
+// so that each mip level is available as a read-only ByteBuffer of blocks
+// without copying, which can be passed to Squish.decompressImage or uploaded
+// to the GPU directly.
+public final class DdsFile {
+
+    private static final int MAGIC = 0x20534444; // "DDS "
+    private static final int HEADER_SIZE = 124;
+    private static final int PIXEL_FORMAT_SIZE = 32;
+    private static final int DATA_OFFSET = 4 + HEADER_SIZE;
+
+    private static final int DDSD_CAPS = 0x1;
+    private static final int DDSD_HEIGHT = 0x2;
+    private static final int DDSD_WIDTH = 0x4;
+    private static final int DDSD_PIXELFORMAT = 0x1000;
+    private static final int DDSD_MIPMAPCOUNT = 0x20000;
+    private static final int DDSD_LINEARSIZE = 0x80000;
+
+    private static final int DDPF_FOURCC = 0x4;
+
+    private static final int DDSCAPS_COMPLEX = 0x8;
+    private static final int DDSCAPS_TEXTURE = 0x1000;
+    private static final int DDSCAPS_MIPMAP = 0x400000;
+
+    private final int width;
+    private final int height;
+    private final CompressionType type;
+    private final ByteBuffer[] levels;
+
+    private DdsFile(final int width, final int height, final CompressionType type, final ByteBuffer[] levels) {
+        this.width = width;
+        this.height = height;
+        this.type = type;
+        this.levels = levels;
+    }
+
+    public int getWidth() { return width; }
+
+    public int getHeight() { return height; }
+
+    public CompressionType getType() { return type; }
+
+    public int getMipMapCount() { return levels.length; }
+
+    public int getWidth(final int level) { return Math.max(1, width >> level); }
+
+    public int getHeight(final int level) { return Math.max(1, height >> level); }
+
+    // the blocks of the mip level, a read-only view of the mapped file
+    public ByteBuffer getLevel(final int level) {
+        return levels[level].duplicate();
+    }
+
+    // Decompresses the mip level into rgba if it is large enough, or into a
+    // new array otherwise, which is returned.
+    public byte[] decompressLevel(final int level, byte[] rgba) {
+        final int w = getWidth(level);
+        final int h = getHeight(level);
+        if ( rgba == null || rgba.length < Squish.getPixelSize(w, h) )
+            rgba = new byte[Squish.checkArraySize(Squish.getPixelSize(w, h))];
+
+        Squish.decompressImage(ByteBuffer.wrap(rgba), w, h, levels[level], type);
+        return rgba;
+    }
+
+    // Maps a DDS file of DXT1, DXT3 or DXT5 blocks into memory. The mapping
+    // stays valid after the file is closed.
+    public static DdsFile open(final Path file) throws IOException {
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ) {
+            final ByteBuffer header = ByteBuffer.allocate(DATA_OFFSET).order(ByteOrder.LITTLE_ENDIAN);
+            while ( header.hasRemaining() ) {
+                if ( channel.read(header, header.position()) < 0 )
+                    throw new IOException("Invalid DDS file: header too short");
+            }
+
+            if ( header.getInt(0) != MAGIC || header.getInt(4) != HEADER_SIZE || header.getInt(76) != PIXEL_FORMAT_SIZE )
+                throw new IOException("Invalid DDS file: bad header");
+
+            final int flags = header.getInt(8);
+            final int height = header.getInt(12);
+            final int width = header.getInt(16);
+            final int mipMapCount = (flags & DDSD_MIPMAPCOUNT) != 0 ? Math.max(1, header.getInt(28)) : 1;
+            final int pixelFormatFlags = header.getInt(80);
+            final int fourCC = header.getInt(84);
+
+            final CompressionType type = (pixelFormatFlags & DDPF_FOURCC) != 0 ? getType(fourCC) : null;
+            if ( type == null )
+                throw new IOException("Unsupported DDS file: not DXT1, DXT3 or DXT5 compressed");
+            if ( width <= 0 || height <= 0 || mipMapCount > 32 )
+                throw new IOException("Invalid DDS file: " + width + " x " + height + " with " + mipMapCount + " mip maps");
+
+            // map each level separately, so that files beyond 2 GiB can be read
+            final ByteBuffer[] levels = new ByteBuffer[mipMapCount];
+            long offset = DATA_OFFSET;
+            for ( int i = 0; i < mipMapCount; ++i ) {
+                final int size = Squish.getArrayStorageRequirements(Math.max(1, width >> i), Math.max(1, height >> i), type);
+                if ( offset + size > channel.size() )
+                    throw new IOException("Invalid DDS file: truncated mip level " + i);
+
+                levels[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, size).asReadOnlyBuffer();
+                offset += size;
+            }
+            return new DdsFile(width, height, type, levels);
+        }
+    }
+
+    // Compresses the RGBA image and writes it to a DDS file, which is created
+    // or overwritten. If mipMaps is set, the full chain of mip levels down to
+    // 1 x 1 is generated by averaging 2 x 2 pixels of the previous level.
+    public static void write(final Path file, final byte[] rgba, final int width, final int height, final boolean mipMaps,
+                             final CompressionType type, final CompressionOptions options) throws IOException {
+        if ( rgba == null || rgba.length < Squish.getPixelSize(width, height) )
+            throw new IllegalArgumentException("Invalid source image data specified.");
+
+        final int mipMapCount = mipMaps ? getMipMapCount(width, height) : 1;
+        final SquishCompressor compressor = new SquishCompressor(type, options);
+
+        try ( FileChannel channel = open(file, width, height, mipMapCount, type) ) {
+            long offset = DATA_OFFSET;
+            byte[] level = rgba;
+            byte[] blocks = null;
+            for ( int i = 0; i < mipMapCount; ++i ) {
+                final int w = Math.max(1, width >> i);
+                final int h = Math.max(1, height >> i);
+                if ( i > 0 )
+                    level = downsample(level, Math.max(1, width >> (i - 1)), Math.max(1, height >> (i - 1)));
+
+                blocks = compressor.compressImage(level, w, h, blocks);
+                final int size = Squish.getArrayStorageRequirements(w, h, type);
+                write(channel, ByteBuffer.wrap(blocks, 0, size), offset);
+                offset += size;
+            }
+        }
+    }
+
+    // Writes already compressed mip levels, starting with the full-size
+    // image, to a DDS file, which is created or overwritten.
+    public static void write(final Path file, final int width, final int height, final CompressionType type, final byte[]... levels) throws IOException {
+        if ( levels.length == 0 || levels.length > getMipMapCount(width, height) )
+            throw new IllegalArgumentException("Invalid number of mip levels specified: " + levels.length);
+
+        try ( FileChannel channel = open(file, width, height, levels.length, type) ) {
+            long offset = DATA_OFFSET;
+            for ( int i = 0; i < levels.length; ++i ) {
+                final int size = Squish.getArrayStorageRequirements(Math.max(1, width >> i), Math.max(1, height >> i), type);
+                if ( levels[i] == null || levels[i].length < size )
+                    throw new IllegalArgumentException("Invalid block data specified for mip level " + i);
+
+                write(channel, ByteBuffer.wrap(levels[i], 0, size), offset);
+                offset += size;
+            }
+        }
+    }
+
+    // the number of mip levels of an image down to 1 x 1
+    public static int getMipMapCount(final int width, final int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    // creates the file and writes the header
+    private static FileChannel open(final Path file, final int width, final int height, final int mipMapCount, final CompressionType type) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(DATA_OFFSET).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0, MAGIC);
+        header.putInt(4, HEADER_SIZE);
+        header.putInt(8, DDSD_CAPS | DDSD_HEIGHT | DDSD_WIDTH | DDSD_PIXELFORMAT | DDSD_LINEARSIZE | (mipMapCount > 1 ? DDSD_MIPMAPCOUNT : 0));
+        header.putInt(12, height);
+        header.putInt(16, width);
+        header.putInt(20, Squish.getArrayStorageRequirements(width, height, type));
+        header.putInt(28, mipMapCount);
+        header.putInt(76, PIXEL_FORMAT_SIZE);
+        header.putInt(80, DDPF_FOURCC);
+        header.putInt(84, getFourCC(type));
+        header.putInt(108, DDSCAPS_TEXTURE | (mipMapCount > 1 ? DDSCAPS_COMPLEX | DDSCAPS_MIPMAP : 0));
+
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            write(channel, header, 0);
+        } catch ( IOException e ) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    private static void write(final FileChannel channel, final ByteBuffer data, long offset) throws IOException {
+        while ( data.hasRemaining() )
+            offset += channel.write(data, offset);
+    }
+
+    private static int getFourCC(final CompressionType type) {
+        switch ( type ) {
+            case DXT1: return 0x31545844; // "DXT1"
+            case DXT3: return 0x33545844; // "DXT3"
+            case DXT5: return 0x35545844; // "DXT5"
+            default: throw new IllegalArgumentException("Unsupported compression type: " + type);
+        }
+    }
+
+    private static CompressionType getType(final int fourCC) {
+        for ( CompressionType type : CompressionType.values() ) {
+            if ( getFourCC(type) == fourCC )
+                return type;
+        }
+        return null;
+    }
+
+    // averages each 2 x 2 pixels of the image (or 2 x 1 pixels if one of the dimensions is 1)
+    private static byte[] downsample(final byte[] rgba, final int width, final int height) {
+        final int w = Math.max(1, width >> 1);
+        final int h = Math.max(1, height >> 1);
+        final byte[] result = new byte[4 * w * h];
+
+        for ( int y = 0; y < h; ++y ) {
+            final int y0 = Math.min(2 * y, height - 1);
+            final int y1 = Math.min(2 * y + 1, height - 1);
+            for ( int x = 0; x < w; ++x ) {
+                final int x0 = Math.min(2 * x, width - 1);
+                final int x1 = Math.min(2 * x + 1, width - 1);
+                for ( int c = 0; c < 4; ++c ) {
+                    final int sum = (rgba[4 * (width * y0 + x0) + c] & 0xff) + (rgba[4 * (width * y0 + x1) + c] & 0xff)
+                                  + (rgba[4 * (width * y1 + x0) + c] & 0xff) + (rgba[4 * (width * y1 + x1) + c] & 0xff);
+                    result[4 * (w * y + x) + c] = (byte)((sum + 2) >> 2);
+                }
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,235 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.awt.image.Raster;
+import java.nio.ByteBuffer;
+
+import io.github.memo33.jsquish.Squish.PixelLayout;
+
+// Provides the pixels of an image to be compressed, block by block.
+abstract class ImageSource {
+
+    final int width;
+    final int height;
+
+    ImageSource(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    static ImageSource wrap(final byte[] rgba, final int width, final int height) {
+        return new ByteArrayRGBA(rgba, 0, 4 * width, width, height);
+    }
+
+    // pixels starting at offset, with rows that are stride bytes apart
+    static ImageSource wrap(final byte[] rgba, final int offset, final int stride, final int width, final int height) {
+        return new ByteArrayRGBA(rgba, offset, stride, width, height);
+    }
+
+    static ImageSource wrap(final byte[] pixels, final PixelLayout layout, final int width, final int height) {
+        if ( layout == PixelLayout.RGBA )
+            return wrap(pixels, width, height);
+        else
+            return new ByteArrayInterleaved(pixels, 0, 4 * width, 4, layout.r, layout.g, layout.b, layout.a, width, height);
+    }
+
+    static ImageSource wrap(final int[] argb, final int width, final int height) {
+        return new IntArrayARGB(argb, 0, width, width, height);
+    }
+
+    // Reads the bands 0 to 3 of the raster as red, green, blue and alpha.
+    // Rasters with 3 bands are opaque. See RasterLayout for which rasters
+    // are accessed directly.
+    static ImageSource wrap(final Raster raster) {
+        final int width = raster.getWidth();
+        final int height = raster.getHeight();
+        final RasterLayout layout = RasterLayout.of(raster);
+
+        if ( layout.intData != null )
+            return new IntArrayARGB(layout.intData, layout.offset, layout.scanlineStride, width, height);
+
+        if ( layout.byteData != null ) {
+            final int[] bandOffsets = layout.bandOffsets;
+            return new ByteArrayInterleaved(layout.byteData, layout.offset, layout.scanlineStride, layout.pixelStride,
+                                            bandOffsets[0], bandOffsets[1], bandOffsets[2], bandOffsets[3],
+                                            width, height);
+        }
+
+        return new RasterBands(raster, layout);
+    }
+
+    static ImageSource wrap(final ByteBuffer rgba, final int width, final int height) {
+        if ( rgba.hasArray() )
+            return new ByteArrayRGBA(rgba.array(), rgba.arrayOffset() + rgba.position(), 4 * width, width, height);
+        else
+            return new ByteBufferRGBA(rgba, rgba.position(), width, height);
+    }
+
+    // Copies the 4x4 block of pixels at (x, y) as RGBA into the target and
+    // returns the mask of pixels that lie inside the image. Pixels outside
+    // the image are left untouched.
+    final int readBlock(final int x, final int y, final byte[] rgba) {
+        final int columns = Math.min(4, width - x);
+        final int rows = Math.min(4, height - y);
+
+        int mask = 0;
+        for ( int py = 0; py < rows; ++py ) {
+            readRow(x, y + py, columns, rgba, 16 * py);
+            mask |= ((1 << columns) - 1) << (4 * py);
+        }
+        return mask;
+    }
+
+    // copies n pixels of row sy, starting at column sx, as RGBA into the target
+    abstract void readRow(int sx, int sy, int n, byte[] rgba, int offset);
+
+    private static final class ByteArrayRGBA extends ImageSource {
+
+        private final byte[] data;
+        private final int offset;
+        private final int scanlineStride;
+
+        ByteArrayRGBA(final byte[] data, final int offset, final int scanlineStride, final int width, final int height) {
+            super(width, height);
+            this.data = data;
+            this.offset = offset;
+            this.scanlineStride = scanlineStride;
+        }
+
+        void readRow(final int sx, final int sy, final int n, final byte[] rgba, final int offset) {
+            System.arraycopy(data, this.offset + scanlineStride * sy + 4 * sx, rgba, offset, 4 * n);
+        }
+    }
+
+    // bytes of arbitrary channel order and pixel stride
+    private static final class ByteArrayInterleaved extends ImageSource {
+
+        private final byte[] data;
+        private final int offset;
+        private final int scanlineStride;
+        private final int pixelStride;
+        private final int r, g, b, a;
+
+        ByteArrayInterleaved(final byte[] data, final int offset, final int scanlineStride, final int pixelStride,
+                             final int r, final int g, final int b, final int a, final int width, final int height) {
+            super(width, height);
+            this.data = data;
+            this.offset = offset;
+            this.scanlineStride = scanlineStride;
+            this.pixelStride = pixelStride;
+            this.r = r;
+            this.g = g;
+            this.b = b;
+            this.a = a;
+        }
+
+        void readRow(final int sx, final int sy, final int n, final byte[] rgba, final int offset) {
+            int sourcePixel = this.offset + scanlineStride * sy + pixelStride * sx;
+            for ( int i = offset; i < offset + 4 * n; i += 4 ) {
+                rgba[i + 0] = data[sourcePixel + r];
+                rgba[i + 1] = data[sourcePixel + g];
+                rgba[i + 2] = data[sourcePixel + b];
+                rgba[i + 3] = data[sourcePixel + a];
+                sourcePixel += pixelStride;
+            }
+        }
+    }
+
+    // packed 0xAARRGGBB ints
+    private static final class IntArrayARGB extends ImageSource {
+
+        private final int[] data;
+        private final int offset;
+        private final int scanlineStride;
+
+        IntArrayARGB(final int[] data, final int offset, final int scanlineStride, final int width, final int height) {
+            super(width, height);
+            this.data = data;
+            this.offset = offset;
+            this.scanlineStride = scanlineStride;
+        }
+
+        void readRow(final int sx, final int sy, final int n, final byte[] rgba, final int offset) {
+            int sourcePixel = this.offset + scanlineStride * sy + sx;
+            for ( int i = offset; i < offset + 4 * n; i += 4 ) {
+                final int argb = data[sourcePixel++];
+                rgba[i + 0] = (byte)(argb >> 16);
+                rgba[i + 1] = (byte)(argb >> 8);
+                rgba[i + 2] = (byte)argb;
+                rgba[i + 3] = (byte)(argb >>> 24);
+            }
+        }
+    }
+
+    // fallback for arbitrary rasters
+    private static final class RasterBands extends ImageSource {
+
+        private final Raster raster;
+        private final RasterLayout layout;
+        private final int bands;
+
+        // the samples of a row of a block, as rasters are only read on one thread
+        private final int[] samples;
+
+        RasterBands(final Raster raster, final RasterLayout layout) {
+            super(raster.getWidth(), raster.getHeight());
+            this.raster = raster;
+            this.layout = layout;
+            this.bands = layout.bands;
+            this.samples = new int[4 * bands];
+        }
+
+        void readRow(final int sx, final int sy, final int n, final byte[] rgba, final int offset) {
+            raster.getPixels(raster.getMinX() + sx, raster.getMinY() + sy, n, 1, samples);
+            for ( int i = 0, j = offset; i < n; ++i, j += 4 ) {
+                rgba[j + 0] = (byte)layout.toByte(samples[bands * i + 0], 0);
+                rgba[j + 1] = (byte)layout.toByte(samples[bands * i + 1], 1);
+                rgba[j + 2] = (byte)layout.toByte(samples[bands * i + 2], 2);
+                rgba[j + 3] = bands == 4 ? (byte)layout.toByte(samples[bands * i + 3], 3) : (byte)0xff;
+            }
+        }
+    }
+
+    private static final class ByteBufferRGBA extends ImageSource {
+
+        private final ByteBuffer data;
+        private final int offset;
+
+        ByteBufferRGBA(final ByteBuffer data, final int offset, final int width, final int height) {
+            super(width, height);
+            this.data = data;
+            this.offset = offset;
+        }
+
+        void readRow(final int sx, final int sy, final int n, final byte[] rgba, final int offset) {
+            int sourcePixel = this.offset + 4 * (width * sy + sx);
+            for ( int i = offset; i < offset + 4 * n; ++i )
+                rgba[i] = data.get(sourcePixel++);
+        }
+    }
+
+}
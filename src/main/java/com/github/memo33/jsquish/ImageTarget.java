@@ -0,0 +1,227 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+
+import io.github.memo33.jsquish.Squish.PixelLayout;
+
+// Receives the pixels of a decompressed image, block by block.
+abstract class ImageTarget {
+
+    final int width;
+    final int height;
+
+    ImageTarget(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    static ImageTarget wrap(final byte[] rgba, final int width, final int height) {
+        return new ByteArrayRGBA(rgba, 0, 4 * width, width, height);
+    }
+
+    // pixels starting at offset, with rows that are stride bytes apart
+    static ImageTarget wrap(final byte[] rgba, final int offset, final int stride, final int width, final int height) {
+        return new ByteArrayRGBA(rgba, offset, stride, width, height);
+    }
+
+    static ImageTarget wrap(final byte[] pixels, final PixelLayout layout, final int width, final int height) {
+        if ( layout == PixelLayout.RGBA )
+            return wrap(pixels, width, height);
+        else
+            return new ByteArrayInterleaved(pixels, 0, 4 * width, 4, layout.r, layout.g, layout.b, layout.a, width, height);
+    }
+
+    static ImageTarget wrap(final int[] argb, final int width, final int height) {
+        return new IntArrayARGB(argb, 0, width, width, height);
+    }
+
+    // Writes red, green, blue and alpha to the bands 0 to 3 of the raster,
+    // dropping alpha if the raster has 3 bands. See RasterLayout for which
+    // rasters are accessed directly.
+    static ImageTarget wrap(final WritableRaster raster) {
+        final int width = raster.getWidth();
+        final int height = raster.getHeight();
+        final RasterLayout layout = RasterLayout.of(raster);
+
+        if ( layout.intData != null )
+            return new IntArrayARGB(layout.intData, layout.offset, layout.scanlineStride, width, height);
+
+        if ( layout.byteData != null ) {
+            final int[] bandOffsets = layout.bandOffsets;
+            return new ByteArrayInterleaved(layout.byteData, layout.offset, layout.scanlineStride, layout.pixelStride,
+                                            bandOffsets[0], bandOffsets[1], bandOffsets[2], bandOffsets[3],
+                                            width, height);
+        }
+
+        return new RasterBands(raster, layout);
+    }
+
+    static ImageTarget wrap(final ByteBuffer rgba, final int width, final int height) {
+        if ( rgba.hasArray() )
+            return new ByteArrayRGBA(rgba.array(), rgba.arrayOffset() + rgba.position(), 4 * width, width, height);
+        else
+            return new ByteBufferRGBA(rgba, rgba.position(), width, height);
+    }
+
+    // Copies the 4x4 block of RGBA pixels to (x, y), skipping the pixels
+    // that lie outside the image.
+    final void writeBlock(final int x, final int y, final byte[] rgba) {
+        final int columns = Math.min(4, width - x);
+        final int rows = Math.min(4, height - y);
+
+        for ( int py = 0; py < rows; ++py )
+            writeRow(x, y + py, columns, rgba, 16 * py);
+    }
+
+    // copies n RGBA pixels to row sy, starting at column sx
+    abstract void writeRow(int sx, int sy, int n, byte[] rgba, int offset);
+
+    private static final class ByteArrayRGBA extends ImageTarget {
+
+        private final byte[] data;
+        private final int offset;
+        private final int scanlineStride;
+
+        ByteArrayRGBA(final byte[] data, final int offset, final int scanlineStride, final int width, final int height) {
+            super(width, height);
+            this.data = data;
+            this.offset = offset;
+            this.scanlineStride = scanlineStride;
+        }
+
+        void writeRow(final int sx, final int sy, final int n, final byte[] rgba, final int offset) {
+            System.arraycopy(rgba, offset, data, this.offset + scanlineStride * sy + 4 * sx, 4 * n);
+        }
+    }
+
+    // bytes of arbitrary channel order and pixel stride
+    private static final class ByteArrayInterleaved extends ImageTarget {
+
+        private final byte[] data;
+        private final int offset;
+        private final int scanlineStride;
+        private final int pixelStride;
+        private final int r, g, b, a;
+
+        ByteArrayInterleaved(final byte[] data, final int offset, final int scanlineStride, final int pixelStride,
+                             final int r, final int g, final int b, final int a, final int width, final int height) {
+            super(width, height);
+            this.data = data;
+            this.offset = offset;
+            this.scanlineStride = scanlineStride;
+            this.pixelStride = pixelStride;
+            this.r = r;
+            this.g = g;
+            this.b = b;
+            this.a = a;
+        }
+
+        void writeRow(final int sx, final int sy, final int n, final byte[] rgba, final int offset) {
+            int targetPixel = this.offset + scanlineStride * sy + pixelStride * sx;
+            for ( int i = offset; i < offset + 4 * n; i += 4 ) {
+                data[targetPixel + r] = rgba[i + 0];
+                data[targetPixel + g] = rgba[i + 1];
+                data[targetPixel + b] = rgba[i + 2];
+                data[targetPixel + a] = rgba[i + 3];
+                targetPixel += pixelStride;
+            }
+        }
+    }
+
+    // packed 0xAARRGGBB ints
+    private static final class IntArrayARGB extends ImageTarget {
+
+        private final int[] data;
+        private final int offset;
+        private final int scanlineStride;
+
+        IntArrayARGB(final int[] data, final int offset, final int scanlineStride, final int width, final int height) {
+            super(width, height);
+            this.data = data;
+            this.offset = offset;
+            this.scanlineStride = scanlineStride;
+        }
+
+        void writeRow(final int sx, final int sy, final int n, final byte[] rgba, final int offset) {
+            int targetPixel = this.offset + scanlineStride * sy + sx;
+            for ( int i = offset; i < offset + 4 * n; i += 4 ) {
+                data[targetPixel++] = ((rgba[i + 3] & 0xff) << 24)
+                                      | ((rgba[i + 0] & 0xff) << 16)
+                                      | ((rgba[i + 1] & 0xff) << 8)
+                                      | (rgba[i + 2] & 0xff);
+            }
+        }
+    }
+
+    // fallback for arbitrary rasters
+    private static final class RasterBands extends ImageTarget {
+
+        private final WritableRaster raster;
+        private final RasterLayout layout;
+        private final int bands;
+
+        // the samples of a row of a block, as rasters are only written on one thread
+        private final int[] samples;
+
+        RasterBands(final WritableRaster raster, final RasterLayout layout) {
+            super(raster.getWidth(), raster.getHeight());
+            this.raster = raster;
+            this.layout = layout;
+            this.bands = layout.bands;
+            this.samples = new int[4 * bands];
+        }
+
+        void writeRow(final int sx, final int sy, final int n, final byte[] rgba, final int offset) {
+            for ( int i = 0, j = offset; i < n; ++i, j += 4 ) {
+                for ( int band = 0; band < bands; ++band )
+                    samples[bands * i + band] = layout.fromByte(rgba[j + band] & 0xff, band);
+            }
+            raster.setPixels(raster.getMinX() + sx, raster.getMinY() + sy, n, 1, samples);
+        }
+    }
+
+    private static final class ByteBufferRGBA extends ImageTarget {
+
+        private final ByteBuffer data;
+        private final int offset;
+
+        ByteBufferRGBA(final ByteBuffer data, final int offset, final int width, final int height) {
+            super(width, height);
+            this.data = data;
+            this.offset = offset;
+        }
+
+        void writeRow(final int sx, final int sy, final int n, final byte[] rgba, final int offset) {
+            int targetPixel = this.offset + 4 * (width * sy + sx);
+            for ( int i = offset; i < offset + 4 * n; ++i )
+                data.put(targetPixel++, rgba[i]);
+        }
+    }
+
+}
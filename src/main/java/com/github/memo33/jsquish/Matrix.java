@@ -33,6 +33,8 @@ final class Matrix {
 
     private static final float FLT_EPSILON = 0.00001f;
 
+    private static final int POWER_ITERATIONS = 8;
+
     private float[] values = new float[6];
 
     Matrix() {
@@ -47,22 +49,31 @@ final class Matrix {
         return values[index];
     }
 
+    void set(final int index, final float value) {
+        values[index] = value;
+    }
+
     static Matrix computeWeightedCovariance(final ColourSet m_colours, Matrix covariance) {
         final int count = m_colours.getCount();
-        final Vec[] points = m_colours.getPoints();
+        final float[] points = m_colours.getPoints();
         final float[] weights = m_colours.getWeights();
 
-        final Vec centroid = new Vec();
-        final Vec a = new Vec();
-        final Vec b = new Vec();
-
         // compute the centroid
         float total = 0.0f;
+        float centroidX = 0.0f;
+        float centroidY = 0.0f;
+        float centroidZ = 0.0f;
         for ( int i = 0; i < count; ++i ) {
-            total += weights[i];
-            centroid.add(a.set(points[i]).mul(weights[i]));
+            final float w = weights[i];
+            total += w;
+            centroidX += points[3 * i] * w;
+            centroidY += points[3 * i + 1] * w;
+            centroidZ += points[3 * i + 2] * w;
         }
-        centroid.div(total);
+        final float rcp = 1.0f / total;
+        centroidX *= rcp;
+        centroidY *= rcp;
+        centroidZ *= rcp;
 
         // accumulate the covariance matrix
         if ( covariance == null )
@@ -73,107 +84,107 @@ final class Matrix {
         final float[] values = covariance.values;
 
         for ( int i = 0; i < count; ++i ) {
-            a.set(points[i]).sub(centroid);
-            b.set(a).mul(weights[i]);
-
-            values[0] += a.x() * b.x();
-            values[1] += a.x() * b.y();
-            values[2] += a.x() * b.z();
-            values[3] += a.y() * b.y();
-            values[4] += a.y() * b.z();
-            values[5] += a.z() * b.z();
+            final float w = weights[i];
+
+            final float aX = points[3 * i] - centroidX;
+            final float aY = points[3 * i + 1] - centroidY;
+            final float aZ = points[3 * i + 2] - centroidZ;
+
+            final float bX = aX * w;
+            final float bY = aY * w;
+            final float bZ = aZ * w;
+
+            values[0] += aX * bX;
+            values[1] += aX * bY;
+            values[2] += aX * bZ;
+            values[3] += aY * bY;
+            values[4] += aY * bZ;
+            values[5] += aZ * bZ;
         }
 
         // return it
         return covariance;
     }
 
-    private static Vec getMultiplicity1Evector(final Matrix matrix, final float evalue) {
+    private static Vec getMultiplicity1Evector(final Matrix matrix, final float evalue, final Vec evector) {
         final float[] values = matrix.values;
 
         // compute M
-        final float[] m = {
-            values[0] - evalue,
-            values[1],
-            values[2],
-            values[3] - evalue,
-            values[4],
-            values[5] - evalue
-        };
+        final float m0 = values[0] - evalue;
+        final float m1 = values[1];
+        final float m2 = values[2];
+        final float m3 = values[3] - evalue;
+        final float m4 = values[4];
+        final float m5 = values[5] - evalue;
 
         // compute U
-        final float[] u = {
-            m[3] * m[5] - m[4] * m[4],
-            m[2] * m[4] - m[1] * m[5],
-            m[1] * m[4] - m[2] * m[3],
-            m[0] * m[5] - m[2] * m[2],
-            m[1] * m[2] - m[4] * m[0],
-            m[0] * m[3] - m[1] * m[1],
-        };
+        final float u0 = m3 * m5 - m4 * m4;
+        final float u1 = m2 * m4 - m1 * m5;
+        final float u2 = m1 * m4 - m2 * m3;
+        final float u3 = m0 * m5 - m2 * m2;
+        final float u4 = m1 * m2 - m4 * m0;
+        final float u5 = m0 * m3 - m1 * m1;
 
         // find the largest component
-        float mc = abs(u[0]);
+        float mc = abs(u0);
         int mi = 0;
-        for ( int i = 1; i < 6; ++i ) {
-            final float c = abs(u[i]);
-            if ( c > mc ) {
-                mc = c;
-                mi = i;
-            }
-        }
+        float c;
+        if ( (c = abs(u1)) > mc ) { mc = c; mi = 1; }
+        if ( (c = abs(u2)) > mc ) { mc = c; mi = 2; }
+        if ( (c = abs(u3)) > mc ) { mc = c; mi = 3; }
+        if ( (c = abs(u4)) > mc ) { mc = c; mi = 4; }
+        if ( (c = abs(u5)) > mc ) { mi = 5; }
 
         // pick the column with this component
         switch ( mi ) {
             case 0:
-                return new Vec(u[0], u[1], u[2]);
+                return evector.set(u0, u1, u2);
             case 1:
             case 3:
-                return new Vec(u[1], u[3], u[4]);
+                return evector.set(u1, u3, u4);
             default:
-                return new Vec(u[2], u[4], u[5]);
+                return evector.set(u2, u4, u5);
         }
     }
 
-    private static Vec getMultiplicity2Evector(final Matrix matrix, final float evalue) {
+    private static Vec getMultiplicity2Evector(final Matrix matrix, final float evalue, final Vec evector) {
         final float[] values = matrix.values;
 
         // compute M
-        final float[] m = {
-            values[0] - evalue,
-            values[1],
-            values[2],
-            values[3] - evalue,
-            values[4],
-            values[5] - evalue
-        };
+        final float m0 = values[0] - evalue;
+        final float m1 = values[1];
+        final float m2 = values[2];
+        final float m3 = values[3] - evalue;
+        final float m4 = values[4];
+        final float m5 = values[5] - evalue;
 
         // find the largest component
-        float mc = abs(m[0]);
+        float mc = abs(m0);
         int mi = 0;
-        for ( int i = 1; i < 6; ++i ) {
-            final float c = abs(m[i]);
-            if ( c > mc ) {
-                mc = c;
-                mi = i;
-            }
-        }
+        float c;
+        if ( (c = abs(m1)) > mc ) { mc = c; mi = 1; }
+        if ( (c = abs(m2)) > mc ) { mc = c; mi = 2; }
+        if ( (c = abs(m3)) > mc ) { mc = c; mi = 3; }
+        if ( (c = abs(m4)) > mc ) { mc = c; mi = 4; }
+        if ( (c = abs(m5)) > mc ) { mi = 5; }
 
         // pick the first eigenvector based on this index
         switch ( mi ) {
             case 0:
             case 1:
-                return new Vec(-m[1], m[0], 0.0f);
+                return evector.set(-m1, m0, 0.0f);
             case 2:
-                return new Vec(m[2], 0.0f, -m[0]);
+                return evector.set(m2, 0.0f, -m0);
             case 3:
             case 4:
-                return new Vec(0.0f, -m[4], m[3]);
+                return evector.set(0.0f, -m4, m3);
             default:
-                return new Vec(0.0f, -m[5], m[4]);
+                return evector.set(0.0f, -m5, m4);
         }
     }
 
-    static Vec computePrincipleComponent(final Matrix matrix) {
+    // computes the principle component into the given vector and returns it
+    static Vec computePrincipleComponent(final Matrix matrix, final Vec principle) {
         final float[] m = matrix.values;
 
         // compute the cubic coefficients
@@ -196,7 +207,7 @@ final class Matrix {
         // test the multiplicity
         if ( FLT_EPSILON < Q ) {
             // only one root, which implies we have a multiple of the identity
-            return new Vec(1.0f);
+            return principle.set(1.0f);
         } else if ( Q < -FLT_EPSILON ) {
             // three distinct roots
             final float theta = (float)atan2(sqrt(-Q), -0.5f * b);
@@ -217,7 +228,7 @@ final class Matrix {
                 l1 = l3;
 
             // get the eigenvector
-            return getMultiplicity1Evector(matrix, l1);
+            return getMultiplicity1Evector(matrix, l1, principle);
         } else { // if( -FLT_EPSILON <= Q && Q <= FLT_EPSILON )
             // two roots
             final float rt;
@@ -231,10 +242,62 @@ final class Matrix {
 
             // get the eigenvector
             if ( abs(l1) > abs(l2) )
-                return getMultiplicity2Evector(matrix, l1);
+                return getMultiplicity2Evector(matrix, l1, principle);
             else
-                return getMultiplicity1Evector(matrix, l2);
+                return getMultiplicity1Evector(matrix, l2, principle);
         }
     }
 
+    // Approximates the principle component by power iterations, starting
+    // with the row of the axis of largest variance, and writes it into the
+    // given vector.
+    static Vec computePrincipleComponentPowerIteration(final Matrix matrix, final Vec principle) {
+        final float[] m = matrix.values;
+
+        // find the largest diagonal entry
+        float diag = m[0];
+        int row = 0;
+        if ( m[3] > diag ) { diag = m[3]; row = 1; }
+        if ( m[5] > diag ) { diag = m[5]; row = 2; }
+
+        // the matrix is zero if all points coincide, so pick any axis
+        if ( !(diag > 0.0f) )
+            return principle.set(1.0f);
+
+        // scale the matrix such that the largest diagonal entry is 1, so
+        // the largest eigenvalue lies in [1, 3] and the iterations can
+        // neither overflow nor run into denormals
+        final float rcp = 1.0f / diag;
+        final float m0 = m[0] * rcp;
+        final float m1 = m[1] * rcp;
+        final float m2 = m[2] * rcp;
+        final float m3 = m[3] * rcp;
+        final float m4 = m[4] * rcp;
+        final float m5 = m[5] * rcp;
+
+        // seed with the row of the largest diagonal entry
+        float x, y, z;
+        switch ( row ) {
+            case 0:
+                x = m0; y = m1; z = m2;
+                break;
+            case 1:
+                x = m1; y = m3; z = m4;
+                break;
+            default:
+                x = m2; y = m4; z = m5;
+        }
+
+        for ( int i = 0; i < POWER_ITERATIONS; ++i ) {
+            final float nX = m0 * x + m1 * y + m2 * z;
+            final float nY = m1 * x + m3 * y + m4 * z;
+            final float nZ = m2 * x + m4 * y + m5 * z;
+            x = nX;
+            y = nY;
+            z = nZ;
+        }
+
+        return principle.set(x, y, z);
+    }
+
 }
@@ -0,0 +1,173 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import io.github.memo33.jsquish.Squish.CompressionMetric;
+
+// The least squares problems of a batch of cluster partitions, whose errors
+// are evaluated all at once. The evaluation is the same as in the scalar
+// PartitionBatch.solve, but on Java 17+ it is done with SIMD
+// instructions if the jdk.incubator.vector module is available (e.g. with
+// --add-modules jdk.incubator.vector), which is detected at runtime.
+final class PartitionBatch {
+
+    // the maximum number of partitions of 16 points into 4 clusters
+    static final int CAPACITY = 969;
+
+    interface Solver {
+        void computeErrors(PartitionBatch batch, float xxX, float xxY, float xxZ, CompressionMetric metric);
+    }
+
+    // the vectorized solver, or the scalar one if not available
+    static final Solver SOLVER = loadSolver();
+
+    // the sums of the least squares problems
+    final float[] alpha2 = new float[CAPACITY];
+    final float[] beta2 = new float[CAPACITY];
+    final float[] alphabeta = new float[CAPACITY];
+    final float[] alphaxX = new float[CAPACITY];
+    final float[] alphaxY = new float[CAPACITY];
+    final float[] alphaxZ = new float[CAPACITY];
+    final float[] betaxX = new float[CAPACITY];
+    final float[] betaxY = new float[CAPACITY];
+    final float[] betaxZ = new float[CAPACITY];
+
+    final float[] errors = new float[CAPACITY];
+
+    int size = 0;
+
+    // scratch space for the scalar solver
+    private final Vec start = new Vec();
+    private final Vec end = new Vec();
+
+    void add(final float alpha2_sum, final float beta2_sum, final float alphabeta_sum,
+             final float alphax_sumX, final float alphax_sumY, final float alphax_sumZ,
+             final float betax_sumX, final float betax_sumY, final float betax_sumZ) {
+        final int p = size++;
+        alpha2[p] = alpha2_sum;
+        beta2[p] = beta2_sum;
+        alphabeta[p] = alphabeta_sum;
+        alphaxX[p] = alphax_sumX;
+        alphaxY[p] = alphax_sumY;
+        alphaxZ[p] = alphax_sumZ;
+        betaxX[p] = betax_sumX;
+        betaxY[p] = betax_sumY;
+        betaxZ[p] = betax_sumZ;
+    }
+
+    private static Solver loadSolver() {
+        if ( Boolean.parseBoolean(System.getProperty("jsquish.vector", "true")) ) {
+            try {
+                // only contained in the multi-release jar for Java 17+
+                final Class<?> solver = Class.forName("io.github.memo33.jsquish.VectorPartitionSolver");
+                if ( (Boolean)solver.getDeclaredMethod("isSupported").invoke(null) )
+                    return (Solver)solver.getDeclaredConstructor().newInstance();
+            } catch ( ReflectiveOperationException | LinkageError e ) {
+                // fall back to the scalar solver
+            }
+        }
+        return PartitionBatch::computeErrors;
+    }
+
+    static void computeErrors(final PartitionBatch batch, final float xxX, final float xxY, final float xxZ, final CompressionMetric metric) {
+        computeErrors(batch, 0, batch.size, xxX, xxY, xxZ, metric);
+    }
+
+    // evaluates the partitions [from, to) of the batch one by one
+    static void computeErrors(final PartitionBatch batch, final int from, final int to,
+                              final float xxX, final float xxY, final float xxZ, final CompressionMetric metric) {
+        for ( int p = from; p < to; ++p )
+            batch.errors[p] = batch.solve(p, xxX, xxY, xxZ, metric, batch.start, batch.end);
+    }
+
+    // solves the least squares problem of the partition p for the endpoints and returns the error
+    float solve(final int p, final float xxX, final float xxY, final float xxZ, final CompressionMetric metric, final Vec start, final Vec end) {
+        final float alpha2_sum = alpha2[p];
+        final float beta2_sum = beta2[p];
+        final float alphabeta_sum = alphabeta[p];
+        final float alphax_sumX = alphaxX[p];
+        final float alphax_sumY = alphaxY[p];
+        final float alphax_sumZ = alphaxZ[p];
+        final float betax_sumX = betaxX[p];
+        final float betax_sumY = betaxY[p];
+        final float betax_sumZ = betaxZ[p];
+
+        float aX, aY, aZ;
+        float bX, bY, bZ;
+
+        // zero where non-determinate
+        if ( beta2_sum == 0.0f ) {
+            final float rcp = 1.0f / alpha2_sum;
+
+            aX = alphax_sumX * rcp;
+            aY = alphax_sumY * rcp;
+            aZ = alphax_sumZ * rcp;
+            bX = bY = bZ = 0.0f;
+        } else if ( alpha2_sum == 0.0f ) {
+            final float rcp = 1.0f / beta2_sum;
+
+            aX = aY = aZ = 0.0f;
+            bX = betax_sumX * rcp;
+            bY = betax_sumY * rcp;
+            bZ = betax_sumZ * rcp;
+        } else {
+            final float rcp = 1.0f / (alpha2_sum * beta2_sum - alphabeta_sum * alphabeta_sum);
+            if ( rcp == (1.0f / 0.0f) ) // Detect Infinity
+                return Float.MAX_VALUE;
+
+            aX = (alphax_sumX * beta2_sum - betax_sumX * alphabeta_sum) * rcp;
+            aY = (alphax_sumY * beta2_sum - betax_sumY * alphabeta_sum) * rcp;
+            aZ = (alphax_sumZ * beta2_sum - betax_sumZ * alphabeta_sum) * rcp;
+
+            bX = (betax_sumX * alpha2_sum - alphax_sumX * alphabeta_sum) * rcp;
+            bY = (betax_sumY * alpha2_sum - alphax_sumY * alphabeta_sum) * rcp;
+            bZ = (betax_sumZ * alpha2_sum - alphax_sumZ * alphabeta_sum) * rcp;
+        }
+
+        // clamp the output to [0, 1]
+        // clamp to the grid
+        aX = CompressorColourFit.clamp(aX, CompressorColourFit.GRID_X, CompressorColourFit.GRID_X_RCP);
+        aY = CompressorColourFit.clamp(aY, CompressorColourFit.GRID_Y, CompressorColourFit.GRID_Y_RCP);
+        aZ = CompressorColourFit.clamp(aZ, CompressorColourFit.GRID_Z, CompressorColourFit.GRID_Z_RCP);
+
+        start.set(aX, aY, aZ);
+
+        bX = CompressorColourFit.clamp(bX, CompressorColourFit.GRID_X, CompressorColourFit.GRID_X_RCP);
+        bY = CompressorColourFit.clamp(bY, CompressorColourFit.GRID_Y, CompressorColourFit.GRID_Y_RCP);
+        bZ = CompressorColourFit.clamp(bZ, CompressorColourFit.GRID_Z, CompressorColourFit.GRID_Z_RCP);
+
+        end.set(bX, bY, bZ);
+
+        // compute the error
+        final float eX = aX * aX * alpha2_sum + bX * bX * beta2_sum + xxX + 2.0f * (aX * bX * alphabeta_sum - aX * alphax_sumX - bX * betax_sumX);
+        final float eY = aY * aY * alpha2_sum + bY * bY * beta2_sum + xxY + 2.0f * (aY * bY * alphabeta_sum - aY * alphax_sumY - bY * betax_sumY);
+        final float eZ = aZ * aZ * alpha2_sum + bZ * bZ * beta2_sum + xxZ + 2.0f * (aZ * bZ * alphabeta_sum - aZ * alphax_sumZ - bZ * betax_sumZ);
+
+        // apply the metric to the error term
+        return metric.dot(eX, eY, eZ);
+    }
+
+}
@@ -0,0 +1,461 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import io.github.memo33.jsquish.Squish.CompressionTask;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+import static java.lang.Math.*;
+import static io.github.memo33.jsquish.CompressorColourFit.*;
+
+// Compresses blocks with the range fit in batches of LANES blocks, which are
+// processed in lockstep. The points, weights and fit results of all blocks of
+// a batch are stored in flat arrays with the block as the innermost index, so
+// that the steps of the fit run with one block per SIMD lane. This needs the
+// Vector API of Java 17+, so batches are only used if the jdk.incubator.vector
+// module is available; otherwise the blocks are compressed one by one, which
+// is just as fast without SIMD instructions. The output is the same as that of
+// CompressorRange and CompressorAlpha.
+final class RangeBatch {
+
+    static final int LANES = 8;
+
+    interface Kernel {
+        // computes the covariance matrices of the point sets
+        void computeCovariance(RangeBatch batch);
+
+        // finds the points with the least and greatest projection onto the principle axes
+        void computeRange(RangeBatch batch);
+
+        // matches the points to the 3 or 4 codes and sums up the errors
+        void fitCodes(RangeBatch batch, int codeCount, int[] closest, float[] errors);
+
+        // matches the alpha values to the 5-alpha and 7-alpha codes and sums up the errors
+        void fitAlpha(RangeBatch batch);
+    }
+
+    // the vectorized kernel, or null if not available
+    static final Kernel KERNEL = loadKernel();
+
+    private final CompressionType type;
+    final CompressionTask task;
+
+    // the blocks of the batch
+    private final byte[][] rgba = new byte[LANES][16 * 4];
+    private final int[] masks = new int[LANES];
+    private final byte[][] targets = new byte[LANES][];
+    private final int[] offsets = new int[LANES];
+    private int size = 0;
+
+    // the point sets, indexed by point * LANES + lane and padded with copies of
+    // the first point without weight, which change neither the covariance nor
+    // the range; blocks without a multi-colour fit have a count of zero
+    final float[] pointsX = new float[16 * LANES];
+    final float[] pointsY = new float[16 * LANES];
+    final float[] pointsZ = new float[16 * LANES];
+    final float[] weights = new float[16 * LANES];
+    final int[] counts = new int[LANES];
+    int maxCount;
+    private final boolean[] transparent = new boolean[LANES];
+
+    // the point of each pixel, indexed by lane * 16 + pixel
+    private final int[] remap = new int[LANES * 16];
+
+    // the colour fit of each block, indexed by element * LANES + lane
+    final float[] covariance = new float[6 * LANES];
+    final float[] principleX = new float[LANES];
+    final float[] principleY = new float[LANES];
+    final float[] principleZ = new float[LANES];
+    final int[] minIndex = new int[LANES];
+    final int[] maxIndex = new int[LANES];
+
+    // the start, end, the two points in between and the midpoint
+    final float[] codesX = new float[5 * LANES];
+    final float[] codesY = new float[5 * LANES];
+    final float[] codesZ = new float[5 * LANES];
+
+    private final int[] closest3 = new int[16 * LANES];
+    private final int[] closest4 = new int[16 * LANES];
+    private final float[] error3 = new float[LANES];
+    private final float[] error4 = new float[LANES];
+
+    // the alpha fit of each block, with an alpha value of -1 for pixels
+    // outside the image, which are matched to the first code
+    final int[] alphas = new int[16 * LANES];
+    final int[] codes5 = new int[8 * LANES];
+    final int[] codes7 = new int[8 * LANES];
+    final int[] indices5 = new int[16 * LANES];
+    final int[] indices7 = new int[16 * LANES];
+    final int[] error5 = new int[LANES];
+    final int[] error7 = new int[LANES];
+    private final int[] min5 = new int[LANES];
+    private final int[] max5 = new int[LANES];
+    private final int[] min7 = new int[LANES];
+    private final int[] max7 = new int[LANES];
+    private final boolean[] uniform = new boolean[LANES];
+
+    // scratch space, so that compressing a batch does not allocate
+    private final int[] keys = new int[16];
+    private final int[] indices = new int[16];
+    private final Matrix matrix = new Matrix();
+    private final Vec principle = new Vec();
+    private final Vec start = new Vec();
+    private final Vec end = new Vec();
+    private final ColourBlock writer = new ColourBlock();
+    private final CompressorAlpha alphaCompressor = new CompressorAlpha();
+    private final ColourSet singleColours = new ColourSet();
+    private final CompressorSingleColour singleColour;
+
+    RangeBatch(final CompressionTask task) {
+        this.type = task.type;
+        this.task = task;
+        this.singleColour = new CompressorSingleColour(singleColours, type, writer);
+    }
+
+    private static Kernel loadKernel() {
+        if ( Boolean.parseBoolean(System.getProperty("jsquish.vector", "true")) ) {
+            try {
+                // only contained in the multi-release jar for Java 17+
+                final Class<?> kernel = Class.forName("io.github.memo33.jsquish.VectorRangeKernel");
+                if ( (Boolean)kernel.getDeclaredMethod("isSupported").invoke(null) )
+                    return (Kernel)kernel.getDeclaredConstructor().newInstance();
+            } catch ( ReflectiveOperationException | LinkageError e ) {
+                // compress the blocks one by one
+            }
+        }
+        return null;
+    }
+
+    // reads the 4x4 block of pixels at (x, y) into the batch, to be compressed
+    // into the target at offset, and compresses the batch once it is full
+    void add(final ImageSource source, final int x, final int y, final byte[] target, final int offset) {
+        final int lane = size++;
+        masks[lane] = source.readBlock(x, y, rgba[lane]);
+        targets[lane] = target;
+        offsets[lane] = offset;
+
+        if ( size == LANES )
+            flush();
+    }
+
+    // compresses the blocks added so far
+    void flush() {
+        if ( size == 0 )
+            return;
+
+        maxCount = 0;
+        for ( int lane = 0; lane < LANES; ++lane ) {
+            initColours(lane);
+            maxCount = max(maxCount, counts[lane]);
+        }
+
+        fitColours();
+
+        if ( type == CompressionType.DXT3 ) {
+            for ( int lane = 0; lane < size; ++lane )
+                alphaCompressor.compressAlphaDxt3(rgba[lane], masks[lane], targets[lane], offsets[lane]);
+        } else if ( type == CompressionType.DXT5 )
+            fitAlphaDxt5();
+
+        // release the targets
+        for ( int lane = 0; lane < size; ++lane )
+            targets[lane] = null;
+        size = 0;
+    }
+
+    // creates the minimal point set of a block like ColourSet.init, but
+    // compares packed colours for finding duplicates
+    private void initColours(final int lane) {
+        final byte[] rgba = this.rgba[lane];
+        final int mask = lane < size ? masks[lane] : 0;
+        final boolean isDXT1 = type == CompressionType.DXT1;
+        final boolean weightAlpha = task.weightAlpha;
+
+        int count = 0;
+        boolean transparent = false;
+        for ( int i = 0; i < 16; ++i ) {
+            // check this pixel is enabled
+            keys[i] = -1;
+            if ( (mask & (1 << i)) == 0 ) {
+                remap[lane * 16 + i] = -1;
+                continue;
+            }
+
+            // check for transparent pixels when using dxt1
+            final int alpha = rgba[4 * i + 3] & 0xFF;
+            if ( isDXT1 && alpha < 128 ) {
+                remap[lane * 16 + i] = -1;
+                transparent = true;
+                continue;
+            }
+
+            // ensure there is always non-zero weight even for zero alpha
+            final float weight = (weightAlpha ? (alpha + 1) / 256.0f : 1.0f);
+
+            // loop over previous points for a match, which never matches in
+            // dxt1 as ColourSet compares the signed alpha byte with 128
+            final int key = ((rgba[4 * i] & 0xFF) << 16) | ((rgba[4 * i + 1] & 0xFF) << 8) | (rgba[4 * i + 2] & 0xFF);
+            int index = -1;
+            if ( !isDXT1 ) {
+                for ( int j = 0; j < i; ++j ) {
+                    if ( keys[j] == key ) {
+                        index = remap[lane * 16 + j];
+                        break;
+                    }
+                }
+            }
+            keys[i] = key;
+
+            if ( index < 0 ) {
+                // add the point normalised to [0,1]
+                final int p = count * LANES + lane;
+                pointsX[p] = (key >>> 16) / 255.0f;
+                pointsY[p] = ((key >>> 8) & 0xFF) / 255.0f;
+                pointsZ[p] = (key & 0xFF) / 255.0f;
+                weights[p] = weight;
+                remap[lane * 16 + i] = count++;
+            } else {
+                // map to this point and increase the weight
+                weights[index * LANES + lane] += weight;
+                remap[lane * 16 + i] = index;
+            }
+        }
+        this.transparent[lane] = transparent;
+
+        if ( count > 1 ) {
+            // pad the point set
+            for ( int i = count; i < 16; ++i ) {
+                final int p = i * LANES + lane;
+                pointsX[p] = pointsX[lane];
+                pointsY[p] = pointsY[lane];
+                pointsZ[p] = pointsZ[lane];
+                weights[p] = 0.0f;
+            }
+            counts[lane] = count;
+            return;
+        }
+
+        // no multi-colour fit needed, so the lane only needs some valid points
+        for ( int i = 0; i < 16; ++i ) {
+            final int p = i * LANES + lane;
+            pointsX[p] = 0.0f;
+            pointsY[p] = 0.0f;
+            pointsZ[p] = 0.0f;
+            weights[p] = 1.0f;
+        }
+        counts[lane] = 0;
+        if ( lane >= size )
+            return;
+
+        final int colourBlock = offsets[lane] + type.blockOffset;
+        if ( count == 0 ) { // all pixels are transparent in dxt1
+            ColourBlock.writeTransparentBlock(targets[lane], colourBlock);
+        } else {
+            singleColours.init(rgba, mask, type, weightAlpha);
+            singleColour.init();
+            singleColour.compress(targets[lane], colourBlock);
+        }
+    }
+
+    private void fitColours() {
+        KERNEL.computeCovariance(this);
+
+        // compute the principle components
+        for ( int l = 0; l < LANES; ++l ) {
+            if ( counts[l] == 0 )
+                continue;
+            for ( int k = 0; k < 6; ++k )
+                matrix.set(k, covariance[k * LANES + l]);
+            task.solver.computePrincipleComponent(matrix, principle);
+            principleX[l] = principle.x();
+            principleY[l] = principle.y();
+            principleZ[l] = principle.z();
+        }
+
+        // get the min and max range as the codebook endpoints
+        KERNEL.computeRange(this);
+
+        // clamp the output to [0, 1] and to the grid, and create the codebooks
+        for ( int l = 0; l < LANES; ++l ) {
+            final int a = minIndex[l] * LANES + l;
+            final float aX = clamp(pointsX[a], GRID_X, GRID_X_RCP);
+            final float aY = clamp(pointsY[a], GRID_Y, GRID_Y_RCP);
+            final float aZ = clamp(pointsZ[a], GRID_Z, GRID_Z_RCP);
+
+            final int b = maxIndex[l] * LANES + l;
+            final float bX = clamp(pointsX[b], GRID_X, GRID_X_RCP);
+            final float bY = clamp(pointsY[b], GRID_Y, GRID_Y_RCP);
+            final float bZ = clamp(pointsZ[b], GRID_Z, GRID_Z_RCP);
+
+            setCode(0, l, aX, aY, aZ);
+            setCode(1, l, bX, bY, bZ);
+            setCode(2, l, 2.0f / 3.0f * aX + 1.0f / 3.0f * bX, 2.0f / 3.0f * aY + 1.0f / 3.0f * bY, 2.0f / 3.0f * aZ + 1.0f / 3.0f * bZ);
+            setCode(3, l, 1.0f / 3.0f * aX + 2.0f / 3.0f * bX, 1.0f / 3.0f * aY + 2.0f / 3.0f * bY, 1.0f / 3.0f * aZ + 2.0f / 3.0f * bZ);
+            setCode(4, l, (aX + bX) * 0.5f, (aY + bY) * 0.5f, (aZ + bZ) * 0.5f);
+        }
+
+        // fit the points to the codebooks, with 3 codes only for the blocks
+        // that need or try the 3-colour mode
+        final boolean isDXT1 = type == CompressionType.DXT1;
+        boolean fit3 = isDXT1 && task.quality.bothModes;
+        for ( int l = 0; isDXT1 && l < size; ++l )
+            fit3 |= counts[l] != 0 && transparent[l];
+        if ( fit3 )
+            KERNEL.fitCodes(this, 3, closest3, error3);
+        KERNEL.fitCodes(this, 4, closest4, error4);
+
+        // save the block with least error like CompressorColourFit.compress
+        for ( int l = 0; l < size; ++l ) {
+            if ( counts[l] == 0 )
+                continue;
+
+            float bestError = Float.MAX_VALUE;
+            int scheme = 0;
+            if ( isDXT1 && (transparent[l] || task.quality.bothModes) && error3[l] < bestError ) {
+                bestError = error3[l];
+                scheme = 3;
+            }
+            if ( !transparent[l] && error4[l] < bestError )
+                scheme = 4;
+
+            start.set(codesX[l], codesY[l], codesZ[l]);
+            end.set(codesX[LANES + l], codesY[LANES + l], codesZ[LANES + l]);
+            if ( scheme == 3 ) {
+                remapIndices(l, closest3);
+                writer.writeColourBlock3(start, end, indices, targets[l], offsets[l] + type.blockOffset);
+            } else if ( scheme == 4 ) {
+                remapIndices(l, closest4);
+                writer.writeColourBlock4(start, end, indices, targets[l], offsets[l] + type.blockOffset);
+            }
+        }
+    }
+
+    private void setCode(final int code, final int lane, final float x, final float y, final float z) {
+        codesX[code * LANES + lane] = x;
+        codesY[code * LANES + lane] = y;
+        codesZ[code * LANES + lane] = z;
+    }
+
+    private void remapIndices(final int lane, final int[] closest) {
+        for ( int i = 0; i < 16; ++i ) {
+            final int j = remap[lane * 16 + i];
+            indices[i] = j == -1 ? 3 : closest[j * LANES + lane];
+        }
+    }
+
+    // the same as CompressorAlpha.compressAlphaDxt5 for all blocks of the batch
+    private void fitAlphaDxt5() {
+        // gather the alpha values
+        for ( int l = 0; l < size; ++l ) {
+            for ( int i = 0; i < 16; ++i )
+                alphas[i * LANES + l] = (masks[l] & (1 << i)) != 0 ? (rgba[l][4 * i + 3] & 0xFF) : -1;
+        }
+
+        // get the range for 5-alpha and 7-alpha interpolation
+        for ( int l = 0; l < size; ++l ) {
+            min5[l] = 255;
+            max5[l] = 0;
+            min7[l] = 255;
+            max7[l] = 0;
+        }
+        for ( int i = 0; i < 16; ++i ) {
+            for ( int l = 0; l < size; ++l ) {
+                final int value = alphas[i * LANES + l];
+                if ( value < 0 )
+                    continue;
+
+                // incorporate into the min/max
+                if ( value < min7[l] )
+                    min7[l] = value;
+                if ( value > max7[l] )
+                    max7[l] = value;
+                if ( value != 0 && value < min5[l] )
+                    min5[l] = value;
+                if ( value != 255 && value > max5[l] )
+                    max5[l] = value;
+            }
+        }
+
+        // fix the ranges and set up the code books
+        for ( int l = 0; l < size; ++l ) {
+            // handle the case that no valid range was found
+            if ( min5[l] > max5[l] )
+                min5[l] = max5[l];
+            if ( min7[l] > max7[l] )
+                min7[l] = max7[l];
+
+            // fix the range to be the minimum in each case
+            if ( max5[l] - min5[l] < 5 )
+                max5[l] = min(min5[l] + 5, 255);
+            if ( max5[l] - min5[l] < 5 )
+                min5[l] = max(0, max5[l] - 5);
+
+            // the alpha is uniformly 0 or 255
+            uniform[l] = max7[l] == 0 || min7[l] == 255;
+
+            if ( max7[l] - min7[l] < 7 )
+                max7[l] = min(min7[l] + 7, 255);
+            if ( max7[l] - min7[l] < 7 )
+                min7[l] = max(0, max7[l] - 7);
+
+            codes5[l] = min5[l];
+            codes5[LANES + l] = max5[l];
+            for ( int i = 1; i < 5; ++i )
+                codes5[(1 + i) * LANES + l] = ((5 - i) * min5[l] + i * max5[l]) / 5;
+            codes5[6 * LANES + l] = 0;
+            codes5[7 * LANES + l] = 255;
+
+            codes7[l] = min7[l];
+            codes7[LANES + l] = max7[l];
+            for ( int i = 1; i < 7; ++i )
+                codes7[(1 + i) * LANES + l] = ((7 - i) * min7[l] + i * max7[l]) / 7;
+        }
+
+        // fit the data to both code books
+        KERNEL.fitAlpha(this);
+
+        // save the blocks with least error
+        for ( int l = 0; l < size; ++l ) {
+            final byte[] block = targets[l];
+            final int alphaBlock = offsets[l];
+            if ( uniform[l] ) {
+                // the 5-alpha code book wins with the codes 0 and 255 as in CompressorAlpha
+                for ( int i = 0; i < 16; ++i )
+                    indices[i] = alphas[i * LANES + l] == 255 ? 7 : 0;
+                alphaCompressor.writeAlphaBlock(0, 5, indices, block, alphaBlock);
+            } else if ( error5[l] <= error7[l] ) {
+                for ( int i = 0; i < 16; ++i )
+                    indices[i] = indices5[i * LANES + l];
+                alphaCompressor.writeAlphaBlock5(min5[l], max5[l], indices, block, alphaBlock);
+            } else {
+                for ( int i = 0; i < 16; ++i )
+                    indices[i] = indices7[i * LANES + l];
+                alphaCompressor.writeAlphaBlock7(min7[l], max7[l], indices, block, alphaBlock);
+            }
+        }
+    }
+
+}
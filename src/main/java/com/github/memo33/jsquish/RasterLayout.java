@@ -0,0 +1,134 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+// The storage of the pixels of a raster, as seen by ImageSource and
+// ImageTarget. The pixels of rasters of TYPE_INT_ARGB and TYPE_4BYTE_ABGR
+// images (and similar) can be accessed directly; other rasters are accessed
+// through their sample model, with the samples rescaled from and to 8 bits.
+final class RasterLayout {
+
+    private static final int[] ARGB_MASKS = { 0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000 };
+
+    // the packed 0xAARRGGBB pixels, or null
+    final int[] intData;
+
+    // the interleaved bytes of the pixels, or null
+    final byte[] byteData;
+
+    // the start of the pixel (0, 0) of the raster and the distances between
+    // pixels and rows in the data, if it is accessed directly
+    final int offset;
+    final int scanlineStride;
+    final int pixelStride;
+
+    // the offsets of red, green, blue and alpha within an interleaved pixel
+    final int[] bandOffsets;
+
+    // the number of bands and the maximal value of each band, if the raster
+    // is accessed through its sample model
+    final int bands;
+    final int[] maxSamples;
+
+    private RasterLayout(final int[] intData, final byte[] byteData, final int offset, final int scanlineStride, final int pixelStride,
+                         final int[] bandOffsets, final int bands, final int[] maxSamples) {
+        this.intData = intData;
+        this.byteData = byteData;
+        this.offset = offset;
+        this.scanlineStride = scanlineStride;
+        this.pixelStride = pixelStride;
+        this.bandOffsets = bandOffsets;
+        this.bands = bands;
+        this.maxSamples = maxSamples;
+    }
+
+    static RasterLayout of(final Raster raster) {
+        final SampleModel sampleModel = raster.getSampleModel();
+        final DataBuffer dataBuffer = raster.getDataBuffer();
+        final int x0 = raster.getMinX() - raster.getSampleModelTranslateX();
+        final int y0 = raster.getMinY() - raster.getSampleModelTranslateY();
+
+        if ( dataBuffer instanceof DataBufferInt && dataBuffer.getNumBanks() == 1
+             && sampleModel instanceof SinglePixelPackedSampleModel
+             && Arrays.equals(((SinglePixelPackedSampleModel)sampleModel).getBitMasks(), ARGB_MASKS) ) {
+            final SinglePixelPackedSampleModel packed = (SinglePixelPackedSampleModel)sampleModel;
+            return new RasterLayout(((DataBufferInt)dataBuffer).getData(), null,
+                                    dataBuffer.getOffset() + packed.getOffset(x0, y0), packed.getScanlineStride(), 1,
+                                    null, 4, null);
+        }
+
+        if ( dataBuffer instanceof DataBufferByte && dataBuffer.getNumBanks() == 1
+             && sampleModel instanceof PixelInterleavedSampleModel && sampleModel.getNumBands() == 4 ) {
+            final PixelInterleavedSampleModel interleaved = (PixelInterleavedSampleModel)sampleModel;
+            final int pixelStride = interleaved.getPixelStride();
+            final int scanlineStride = interleaved.getScanlineStride();
+            return new RasterLayout(null, ((DataBufferByte)dataBuffer).getData(),
+                                    dataBuffer.getOffset() + y0 * scanlineStride + x0 * pixelStride, scanlineStride, pixelStride,
+                                    interleaved.getBandOffsets(), 4, null);
+        }
+
+        // the bands 0 to 3 are red, green, blue and alpha, and without alpha the image is opaque
+        final int bands = raster.getNumBands();
+        if ( bands != 3 && bands != 4 )
+            throw new IllegalArgumentException("Invalid number of raster bands specified: " + bands);
+
+        // the samples must be integers that fit into an int sample of the pixel arrays
+        final int dataType = raster.getTransferType();
+        if ( dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE )
+            throw new IllegalArgumentException("Invalid raster data type specified: " + dataType);
+
+        final int[] maxSamples = new int[bands];
+        for ( int band = 0; band < bands; ++band ) {
+            final int size = sampleModel.getSampleSize(band);
+            if ( size < 1 || size > 16 )
+                throw new IllegalArgumentException("Invalid raster sample size specified: " + size + " bits");
+            maxSamples[band] = (1 << size) - 1;
+        }
+        return new RasterLayout(null, null, 0, 0, 0, null, bands, maxSamples);
+    }
+
+    // rescales the sample of the band to 8 bits
+    int toByte(final int sample, final int band) {
+        final int max = maxSamples[band];
+        return max == 0xff ? sample : (sample * 0xff + max / 2) / max;
+    }
+
+    // rescales the 8-bit value to a sample of the band
+    int fromByte(final int value, final int band) {
+        final int max = maxSamples[band];
+        return max == 0xff ? value : (value * max + 0x7f) / 0xff;
+    }
+
+}
@@ -26,6 +26,13 @@
 
 package io.github.memo33.jsquish;
 
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 public final class Squish {
 
     public enum CompressionType {
@@ -47,18 +54,79 @@ public final class Squish {
 
         CLUSTER_FIT() {
 
-            CompressorColourFit getCompressor(final ColourSet colours, final CompressionType type, final CompressionMetric metric, final ColourBlock writer) {
-                return new CompressorCluster(colours, type, metric, writer);
+            CompressorColourFit getCompressor(final ColourSet colours, final CompressionType type, final CompressionMetric metric, final AxisSolver solver, final CompressionQuality quality, final ColourBlock writer) {
+                return new CompressorCluster(colours, type, metric, solver, quality, writer);
 
             }},
         RANGE_FIT() {
 
-            CompressorColourFit getCompressor(final ColourSet colours, final CompressionType type, final CompressionMetric metric, final ColourBlock writer) {
-                return new CompressorRange(colours, type, metric, writer);
+            CompressorColourFit getCompressor(final ColourSet colours, final CompressionType type, final CompressionMetric metric, final AxisSolver solver, final CompressionQuality quality, final ColourBlock writer) {
+                return new CompressorRange(colours, type, metric, solver, quality, writer);
+
+            }};
+
+        abstract CompressorColourFit getCompressor(ColourSet colours, CompressionType type, CompressionMetric metric, AxisSolver solver, CompressionQuality quality, ColourBlock writer);
+
+    }
+
+    // The method of computing the principle axis of the colours of a block,
+    // along which the multi-colour fits order the colours.
+    public enum AxisSolver {
+
+        // solves the characteristic polynomial of the covariance matrix
+        ANALYTIC() {
+
+            Vec computePrincipleComponent(final Matrix covariance, final Vec principle) {
+                return Matrix.computePrincipleComponent(covariance, principle);
+
+            }},
+        // applies a fixed number of power iterations to the covariance matrix,
+        // which is faster but less accurate for nearly degenerate matrices
+        POWER_ITERATION() {
+
+            Vec computePrincipleComponent(final Matrix covariance, final Vec principle) {
+                return Matrix.computePrincipleComponentPowerIteration(covariance, principle);
 
             }};
 
-        abstract CompressorColourFit getCompressor(ColourSet colours, CompressionType type, CompressionMetric metric, ColourBlock writer);
+        abstract Vec computePrincipleComponent(Matrix covariance, Vec principle);
+
+    }
+
+    // The trade-off between speed and quality of the multi-colour fits: the
+    // number of orderings of the points that the cluster fits iterate on,
+    // how far the cluster boundaries of the partitions they check move away
+    // from the canonical clusters of each ordering, and whether opaque DXT1
+    // blocks try the 3-colour mode besides the 4-colour one.
+    public enum CompressionQuality {
+
+        // a single ordering, boundaries moved by at most one point, 4 colours only
+        FASTEST(1, 1, false, false),
+        // a few orderings, boundaries moved by at most two points, 4 colours only
+        FAST(4, 2, false, false),
+        // boundaries moved within the neighbouring canonical clusters
+        NORMAL(10, 16, false, true),
+        // all partitions of each ordering, as the original libsquish
+        BEST(16, 16, true, true);
+
+        // the maximal number of orderings of the points
+        final int iterations;
+
+        // the maximal distance of a cluster boundary from its canonical position
+        final int window;
+
+        // whether the boundaries may move beyond the neighbouring canonical clusters
+        final boolean exhaustive;
+
+        // whether opaque dxt1 blocks try both the 3-colour and the 4-colour mode
+        final boolean bothModes;
+
+        CompressionQuality(final int iterations, final int window, final boolean exhaustive, final boolean bothModes) {
+            this.iterations = iterations;
+            this.window = window;
+            this.exhaustive = exhaustive;
+            this.bothModes = bothModes;
+        }
 
     }
 
@@ -85,26 +153,161 @@ public final class Squish {
 
     }
 
-    private static class CompressionTask {
+    // The order of the channels of images with 4 bytes per pixel.
+    public enum PixelLayout {
 
-        private final ColourSet colours = new ColourSet();
-        private final ColourBlock writer = new ColourBlock();
+        RGBA(0, 1, 2, 3),
+        BGRA(2, 1, 0, 3),
+        ARGB(1, 2, 3, 0),
+        ABGR(3, 2, 1, 0);
+
+        // the offsets of the channels within a pixel
+        final int r;
+        final int g;
+        final int b;
+        final int a;
+
+        PixelLayout(final int r, final int g, final int b, final int a) {
+            this.r = r;
+            this.g = g;
+            this.b = b;
+            this.a = a;
+        }
+    }
+
+    // The settings of a compression besides its type, i.e. the multi-colour
+    // fit, the error metric, whether to weight colours by alpha, the axis
+    // solver and the quality. Options are immutable; each with method
+    // returns a copy with one setting changed.
+    public static final class CompressionOptions {
+
+        // CLUSTER_FIT, PERCEPTUAL, no alpha weighting, ANALYTIC and NORMAL
+        public static final CompressionOptions DEFAULT =
+            new CompressionOptions(CompressionMethod.CLUSTER_FIT, CompressionMetric.PERCEPTUAL, false, AxisSolver.ANALYTIC, CompressionQuality.NORMAL);
 
-        private final CompressionType type;
         private final CompressionMethod method;
         private final CompressionMetric metric;
         private final boolean weightAlpha;
+        private final AxisSolver solver;
+        private final CompressionQuality quality;
 
-        private final CompressorColourFit multiColour;
-        private CompressorSingleColour singleColour = null;
-        private CompressorAlpha alphaCompressor = null;
+        private CompressionOptions(final CompressionMethod method, final CompressionMetric metric, final boolean weightAlpha,
+                                   final AxisSolver solver, final CompressionQuality quality) {
+            if ( method == null || metric == null || solver == null || quality == null )
+                throw new NullPointerException();
 
-        CompressionTask(CompressionType type, CompressionMethod method, CompressionMetric metric, boolean weightAlpha) {
-            this.type = type;
             this.method = method;
             this.metric = metric;
             this.weightAlpha = weightAlpha;
-            this.multiColour = method.getCompressor(colours, type, metric, writer);
+            this.solver = solver;
+            this.quality = quality;
+        }
+
+        // the given settings with the default axis solver and quality
+        public static CompressionOptions of(final CompressionMethod method, final CompressionMetric metric, final boolean weightAlpha) {
+            return new CompressionOptions(method, metric, weightAlpha, AxisSolver.ANALYTIC, CompressionQuality.NORMAL);
+        }
+
+        public CompressionOptions withMethod(final CompressionMethod method) {
+            return new CompressionOptions(method, metric, weightAlpha, solver, quality);
+        }
+
+        public CompressionOptions withMetric(final CompressionMetric metric) {
+            return new CompressionOptions(method, metric, weightAlpha, solver, quality);
+        }
+
+        public CompressionOptions withWeightAlpha(final boolean weightAlpha) {
+            return new CompressionOptions(method, metric, weightAlpha, solver, quality);
+        }
+
+        public CompressionOptions withAxisSolver(final AxisSolver solver) {
+            return new CompressionOptions(method, metric, weightAlpha, solver, quality);
+        }
+
+        public CompressionOptions withQuality(final CompressionQuality quality) {
+            return new CompressionOptions(method, metric, weightAlpha, solver, quality);
+        }
+
+        public CompressionMethod getMethod() {
+            return method;
+        }
+
+        public CompressionMetric getMetric() {
+            return metric;
+        }
+
+        public boolean isWeightAlpha() {
+            return weightAlpha;
+        }
+
+        public AxisSolver getAxisSolver() {
+            return solver;
+        }
+
+        public CompressionQuality getQuality() {
+            return quality;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if ( !(obj instanceof CompressionOptions) )
+                return false;
+
+            final CompressionOptions other = (CompressionOptions)obj;
+            return method == other.method && metric == other.metric && weightAlpha == other.weightAlpha
+                   && solver == other.solver && quality == other.quality;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = method.hashCode();
+            hash = 31 * hash + metric.hashCode();
+            hash = 31 * hash + (weightAlpha ? 1 : 0);
+            hash = 31 * hash + solver.hashCode();
+            return 31 * hash + quality.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return method + ", " + metric + (weightAlpha ? ", weight alpha, " : ", ") + solver + ", " + quality;
+        }
+    }
+
+    // Holds the state needed for compressing blocks on a single thread.
+    static final class CompressionTask {
+
+        private final ColourSet colours = new ColourSet();
+        private final ColourBlock writer = new ColourBlock();
+
+        final byte[] sourceRGBA = new byte[16 * 4];
+        private final byte[] block;
+
+        final CompressionType type;
+        final CompressionMethod method;
+        final CompressionMetric metric;
+        final boolean weightAlpha;
+        final AxisSolver solver;
+        final CompressionQuality quality;
+        final CompressionOptions options;
+
+        final CompressorColourFit multiColour;
+        private CompressorSingleColour singleColour = null;
+        private CompressorAlpha alphaCompressor = null;
+        private RangeBatch rangeBatch = null;
+
+        // optional cache of previously compressed blocks
+        BlockCache blockCache = null;
+
+        CompressionTask(final CompressionType type, final CompressionOptions options) {
+            this.type = type;
+            this.method = options.getMethod();
+            this.metric = options.getMetric();
+            this.weightAlpha = options.isWeightAlpha();
+            this.solver = options.getAxisSolver();
+            this.quality = options.getQuality();
+            this.options = options;
+            this.multiColour = method.getCompressor(colours, type, metric, solver, quality, writer);
+            this.block = new byte[type.blockSize];
         }
 
         CompressorSingleColour getSingleColourCompressor() {
@@ -122,11 +325,28 @@ public final class Squish {
             }
             return alphaCompressor;
         }
+
+        // the batch for compressing several blocks at once, or null if the
+        // blocks are compressed one by one; only the block rows written to
+        // arrays use it, so direct buffers, recompressImage and the frame
+        // encoder compress one by one, as do tasks with a block cache, which
+        // must look up each block; both ways give the same output
+        RangeBatch getRangeBatch() {
+            if ( RangeBatch.KERNEL == null || method != CompressionMethod.RANGE_FIT || blockCache != null )
+                return null;
+            // initialise if needed
+            if (rangeBatch == null) {
+                rangeBatch = new RangeBatch(this);
+            }
+            return rangeBatch;
+        }
     }
 
     private Squish() {
     }
 
+    // The result overflows for images whose blocks take more than
+    // Integer.MAX_VALUE bytes; use getStorageRequirementsLong for those.
     public static int getStorageRequirements(final int width, final int height, final CompressionType type) {
         if ( width <= 0 || height <= 0 )
             throw new IllegalArgumentException("Invalid image dimensions specified: " + width + " x " + height);
@@ -136,6 +356,35 @@ public final class Squish {
         return blockcount * type.blockSize;
     }
 
+    // Same as getStorageRequirements, but also for images whose blocks do
+    // not fit into a single array.
+    public static long getStorageRequirementsLong(final int width, final int height, final CompressionType type) {
+        if ( width <= 0 || height <= 0 )
+            throw new IllegalArgumentException("Invalid image dimensions specified: " + width + " x " + height);
+
+        final long blockcount = ((width + 3L) / 4) * ((height + 3L) / 4);
+
+        return blockcount * type.blockSize;
+    }
+
+    // the number of bytes of the RGBA pixels of an image
+    static long getPixelSize(final int width, final int height) {
+        return 4L * width * height;
+    }
+
+    // the number of bytes of the blocks of an image, which must fit into a single array
+    static int getArrayStorageRequirements(final int width, final int height, final CompressionType type) {
+        return checkArraySize(getStorageRequirementsLong(width, height, type));
+    }
+
+    // checks that a size can be stored in a single array
+    static int checkArraySize(final long size) {
+        if ( size > Integer.MAX_VALUE - 8 )
+            throw new IllegalArgumentException("Image data too large for a single array: " + size + " bytes");
+
+        return (int)size;
+    }
+
     public static byte[] compressImage(final byte[] rgba, final int width, final int height, final byte[] blocks, final CompressionType type) {
         return compressImage(rgba, width, height, blocks, type, CompressionMethod.CLUSTER_FIT, CompressionMetric.PERCEPTUAL, false);
     }
@@ -144,70 +393,351 @@ public final class Squish {
         return compressImage(rgba, width, height, blocks, type, method, CompressionMetric.PERCEPTUAL, false);
     }
 
-    // TODO: Add interface for ByteBuffers
+    public static byte[] compressImage(final byte[] rgba, final int width, final int height, final byte[] blocks,
+                                       final CompressionType type, final CompressionMethod method, final CompressionMetric metric, final boolean weightAlpha) {
+        return compressImage(rgba, width, height, blocks, type, CompressionOptions.of(method, metric, weightAlpha));
+    }
+
     // concurrent calls allowed!
     public static byte[] compressImage(final byte[] rgba, final int width, final int height, byte[] blocks,
-                                       final CompressionType type, final CompressionMethod method, final CompressionMetric metric, final boolean weightAlpha) {
+                                       final CompressionType type, final CompressionOptions options) {
         blocks = checkCompressInput(rgba, width, height, blocks, type);
 
-        final byte[] sourceRGBA = new byte[16 * 4];
+        final CompressionTask task = new CompressionTask(type, options);
+
+        compressBlockRows(ImageSource.wrap(rgba, width, height), blocks, 0, 0, (height + 3) / 4, task);
+
+        return blocks;
+    }
+
+    // Compresses a rectangle of RGBA pixels that starts at rgbaOffset and whose
+    // rows are rgbaStride bytes apart (e.g. a region of a larger image) into
+    // the existing blocks, starting at blockOffset with block rows blockStride
+    // bytes apart (e.g. a region of a larger compressed surface, whose
+    // top-left corner needs to be aligned to the 4x4 block grid).
+    // concurrent calls allowed!
+    public static byte[] compressImage(final byte[] rgba, final int rgbaOffset, final int rgbaStride, final int width, final int height,
+                                       final byte[] blocks, final int blockOffset, final int blockStride,
+                                       final CompressionType type, final CompressionOptions options) {
+        checkRegions(rgba, rgbaOffset, rgbaStride, width, height, blocks, blockOffset, blockStride, type);
+
+        final CompressionTask task = new CompressionTask(type, options);
+
+        compressBlockRows(ImageSource.wrap(rgba, rgbaOffset, rgbaStride, width, height), blocks, blockOffset, blockStride, 0, (height + 3) / 4, task);
+
+        return blocks;
+    }
+
+    // Recompresses only the blocks of an already compressed image that
+    // intersect the given dirty rectangles of pixels, writing them into the
+    // existing blocks in place. The rectangles are expanded to the 4x4 block
+    // grid and clipped to the image.
+    // concurrent calls allowed!
+    public static byte[] recompressImage(final byte[] rgba, final int width, final int height, final byte[] blocks, final Rectangle[] dirtyRects,
+                                         final CompressionType type, final CompressionOptions options) {
+        checkRecompressInput(rgba, width, height, blocks, dirtyRects, type);
+
+        final CompressionTask task = new CompressionTask(type, options);
+
+        final ImageSource source = ImageSource.wrap(rgba, width, height);
+        for ( Rectangle dirty : dirtyRects )
+            compressBlockRect(source, blocks, dirty, task);
+
+        return blocks;
+    }
+
+    // Same as compressImage for RGBA bytes, but reads pixels of the given channel order.
+    // concurrent calls allowed!
+    public static byte[] compressImage(final byte[] pixels, final PixelLayout layout, final int width, final int height, byte[] blocks,
+                                       final CompressionType type, final CompressionOptions options) {
+        blocks = checkCompressInput(pixels, width, height, blocks, type);
+
+        final CompressionTask task = new CompressionTask(type, options);
+
+        compressBlockRows(ImageSource.wrap(pixels, layout, width, height), blocks, 0, 0, (height + 3) / 4, task);
+
+        return blocks;
+    }
+
+    // Same as compressImage for RGBA bytes, but reads pixels packed as 0xAARRGGBB ints.
+    // concurrent calls allowed!
+    public static byte[] compressImage(final int[] argb, final int width, final int height, byte[] blocks,
+                                       final CompressionType type, final CompressionOptions options) {
+        blocks = checkCompressInput(argb, width, height, blocks, type);
+
+        final CompressionTask task = new CompressionTask(type, options);
+
+        compressBlockRows(ImageSource.wrap(argb, width, height), blocks, 0, 0, (height + 3) / 4, task);
+
+        return blocks;
+    }
+
+    // Compresses the raster (e.g. of a BufferedImage), reading its bands as
+    // red, green, blue and optionally alpha. The pixels of TYPE_INT_ARGB and
+    // TYPE_4BYTE_ABGR images are read directly from their data buffer.
+    // Premultiplied alpha is not undone.
+    // concurrent calls allowed!
+    public static byte[] compressImage(final Raster raster, byte[] blocks,
+                                       final CompressionType type, final CompressionOptions options) {
+        blocks = checkCompressOutput(raster.getWidth(), raster.getHeight(), blocks, type);
+
+        final CompressionTask task = new CompressionTask(type, options);
+
+        compressBlockRows(ImageSource.wrap(raster), blocks, 0, 0, (raster.getHeight() + 3) / 4, task);
+
+        return blocks;
+    }
+
+    public static ByteBuffer compressImage(final ByteBuffer rgba, final int width, final int height, final ByteBuffer blocks, final CompressionType type) {
+        return compressImage(rgba, width, height, blocks, type, CompressionOptions.DEFAULT);
+    }
+
+    public static ByteBuffer compressImage(final ByteBuffer rgba, final int width, final int height, final ByteBuffer blocks, final CompressionType type, final CompressionMethod method) {
+        return compressImage(rgba, width, height, blocks, type, CompressionOptions.DEFAULT.withMethod(method));
+    }
+
+    // Reads the image from the remaining bytes of rgba and writes the blocks
+    // starting at the position of blocks. The positions of both buffers are
+    // left unchanged. Heap and direct buffers are accessed in place.
+    // concurrent calls allowed!
+    public static ByteBuffer compressImage(final ByteBuffer rgba, final int width, final int height, ByteBuffer blocks,
+                                           final CompressionType type, final CompressionOptions options) {
+        blocks = checkCompressInput(rgba, width, height, blocks, type);
+
+        final CompressionTask task = new CompressionTask(type, options);
+
+        compressBlockRows(ImageSource.wrap(rgba, width, height), blocks, 0, (height + 3) / 4, task);
+
+        return blocks;
+    }
+
+    // Compresses the image on the given pool by splitting it into stripes of
+    // block rows. Each stripe uses its own compressors, so the output is
+    // identical to the one of compressImage.
+    public static byte[] compressImageParallel(final byte[] rgba, final int width, final int height, byte[] blocks,
+                                               final CompressionType type, final CompressionOptions options,
+                                               final ForkJoinPool pool) {
+        blocks = checkCompressInput(rgba, width, height, blocks, type);
 
-        final CompressionTask task = new CompressionTask(type, method, metric, weightAlpha);
+        final int blockRows = (height + 3) / 4;
+        final int stripeRows = Math.max(1, blockRows / (4 * pool.getParallelism()));
+        pool.invoke(new CompressionStripe(ImageSource.wrap(rgba, width, height), blocks, type, options, 0, blockRows, stripeRows));
+
+        return blocks;
+    }
+
+    private static final class CompressionStripe extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ImageSource source;
+        private final byte[] blocks;
+
+        private final CompressionType type;
+        private final CompressionOptions options;
+
+        private final int fromRow;
+        private final int toRow;
+        private final int stripeRows;
+
+        CompressionStripe(final ImageSource source, final byte[] blocks,
+                          final CompressionType type, final CompressionOptions options,
+                          final int fromRow, final int toRow, final int stripeRows) {
+            this.source = source;
+            this.blocks = blocks;
+            this.type = type;
+            this.options = options;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.stripeRows = stripeRows;
+        }
+
+        @Override
+        protected void compute() {
+            if ( toRow - fromRow <= stripeRows ) {
+                final CompressionTask task = new CompressionTask(type, options);
+                compressBlockRows(source, blocks, 0, fromRow, toRow, task);
+            } else {
+                final int mid = (fromRow + toRow) >>> 1;
+                invokeAll(new CompressionStripe(source, blocks, type, options, fromRow, mid, stripeRows),
+                          new CompressionStripe(source, blocks, type, options, mid, toRow, stripeRows));
+            }
+        }
+    }
+
+    // compresses the block rows [fromRow, toRow) of the image into the blocks starting at offset
+    static void compressBlockRows(final ImageSource source, final byte[] blocks, final int offset,
+                                  final int fromRow, final int toRow, final CompressionTask task) {
+        compressBlockRows(source, blocks, offset, ((source.width + 3) / 4) * task.type.blockSize, fromRow, toRow, task);
+    }
+
+    // compresses the block rows [fromRow, toRow) of the image into the blocks starting at offset,
+    // with the given distance in bytes between the starts of consecutive block rows
+    static void compressBlockRows(final ImageSource source, final byte[] blocks, final int offset, final int blockStride,
+                                  final int fromRow, final int toRow, final CompressionTask task) {
+        final CompressionType type = task.type;
+        final byte[] sourceRGBA = task.sourceRGBA;
+        final RangeBatch batch = task.getRangeBatch();
 
         // loop over blocks
-        int targetBlock = 0;
-        for ( int y = 0; y < height; y += 4 ) {
-            for ( int x = 0; x < width; x += 4 ) {
-                // build the 4x4 block of pixels
-                int targetPixel = 0;
-                int mask = 0;
-                for ( int py = 0; py < 4; ++py ) {
-                    final int sy = y + py;
-                    for ( int px = 0; px < 4; ++px ) {
-                        // get the source pixel in the image
-                        final int sx = x + px;
-
-                        // enable if we're in the image
-                        if ( sx < width && sy < height ) {
-                            // copy the rgba value
-                            int sourcePixel = 4 * (width * sy + sx);
-                            for ( int i = 0; i < 4; ++i )
-                                sourceRGBA[targetPixel++] = rgba[sourcePixel++];
-
-                            // enable this pixel
-                            mask |= (1 << (4 * py + px));
-                        } else {
-                            // skip this pixel as its outside the image
-                            targetPixel += 4;
-                        }
-                    }
+        for ( int y = 4 * fromRow; y < 4 * toRow; y += 4 ) {
+            int targetBlock = offset + (y / 4) * blockStride;
+            for ( int x = 0; x < source.width; x += 4 ) {
+                if ( batch != null ) {
+                    // compress it together with the next blocks
+                    batch.add(source, x, y, blocks, targetBlock);
+                } else {
+                    // build the 4x4 block of pixels
+                    final int mask = source.readBlock(x, y, sourceRGBA);
+
+                    // compress it into the output
+                    compress(sourceRGBA, mask, blocks, targetBlock, task);
                 }
 
-                // compress it into the output
+                // advance
+                targetBlock += type.blockSize;
+            }
+        }
+
+        if ( batch != null )
+            batch.flush();
+    }
+
+    // compresses the blocks of the image that intersect the pixel rectangle into their place in the blocks
+    static void compressBlockRect(final ImageSource source, final byte[] blocks, final Rectangle dirty, final CompressionTask task) {
+        final CompressionType type = task.type;
+        final byte[] sourceRGBA = task.sourceRGBA;
+
+        if ( dirty.isEmpty() )
+            return;
+
+        // expand to the block grid and clip to the image
+        final int x0 = Math.max(dirty.x, 0) & ~3;
+        final int y0 = Math.max(dirty.y, 0) & ~3;
+        final int x1 = (int)Math.min((long)dirty.x + dirty.width, source.width);
+        final int y1 = (int)Math.min((long)dirty.y + dirty.height, source.height);
+
+        final int blockStride = ((source.width + 3) / 4) * type.blockSize;
+        for ( int y = y0; y < y1; y += 4 ) {
+            int targetBlock = (y / 4) * blockStride + (x0 / 4) * type.blockSize;
+            for ( int x = x0; x < x1; x += 4 ) {
+                final int mask = source.readBlock(x, y, sourceRGBA);
+
                 compress(sourceRGBA, mask, blocks, targetBlock, task);
 
-                // advance
                 targetBlock += type.blockSize;
             }
         }
+    }
+
+    // compresses the block rows [fromRow, toRow) of the image into the blocks starting at their position
+    static void compressBlockRows(final ImageSource source, final ByteBuffer blocks,
+                                  final int fromRow, final int toRow, final CompressionTask task) {
+        if ( blocks.hasArray() ) {
+            compressBlockRows(source, blocks.array(), blocks.arrayOffset() + blocks.position(), fromRow, toRow, task);
+            return;
+        }
+
+        final CompressionType type = task.type;
+        final byte[] sourceRGBA = task.sourceRGBA;
+        final byte[] block = task.block;
+
+        // loop over blocks
+        int targetBlock = blocks.position() + fromRow * ((source.width + 3) / 4) * type.blockSize;
+        for ( int y = 4 * fromRow; y < 4 * toRow; y += 4 ) {
+            for ( int x = 0; x < source.width; x += 4 ) {
+                // build the 4x4 block of pixels
+                final int mask = source.readBlock(x, y, sourceRGBA);
+
+                // compress it and copy it into the output
+                compress(sourceRGBA, mask, block, 0, task);
+                for ( int i = 0; i < type.blockSize; ++i )
+                    blocks.put(targetBlock++, block[i]);
+            }
+        }
+    }
+
+    static byte[] checkCompressInput(final byte[] rgba, final int width, final int height, byte[] blocks, final CompressionType type) {
+        final int storageSize = getArrayStorageRequirements(width, height, type);
+
+        if ( rgba == null || rgba.length < getPixelSize(width, height) )
+            throw new IllegalArgumentException("Invalid source image data specified.");
+
+        if ( blocks == null || blocks.length < storageSize )
+            blocks = new byte[storageSize];
 
         return blocks;
     }
 
-    private static byte[] checkCompressInput(final byte[] rgba, final int width, final int height, byte[] blocks, final CompressionType type) {
-        final int storageSize = getStorageRequirements(width, height, type);
+    static byte[] checkCompressInput(final int[] argb, final int width, final int height, byte[] blocks, final CompressionType type) {
+        final int storageSize = getArrayStorageRequirements(width, height, type);
+
+        if ( argb == null || argb.length < getPixelSize(width, height) / 4 )
+            throw new IllegalArgumentException("Invalid source image data specified.");
+
+        if ( blocks == null || blocks.length < storageSize )
+            blocks = new byte[storageSize];
+
+        return blocks;
+    }
+
+    static void checkRecompressInput(final byte[] rgba, final int width, final int height, final byte[] blocks, final Rectangle[] dirtyRects, final CompressionType type) {
+        final int storageSize = getArrayStorageRequirements(width, height, type);
+
+        if ( rgba == null || rgba.length < getPixelSize(width, height) )
+            throw new IllegalArgumentException("Invalid source image data specified.");
+
+        if ( blocks == null || blocks.length < storageSize )
+            throw new IllegalArgumentException("Invalid target block data specified.");
+
+        if ( dirtyRects == null )
+            throw new IllegalArgumentException("Invalid dirty rectangles specified.");
+    }
+
+    // checks that the pixel and block regions lie within their arrays
+    static void checkRegions(final byte[] rgba, final int rgbaOffset, final int rgbaStride, final int width, final int height,
+                             final byte[] blocks, final int blockOffset, final int blockStride, final CompressionType type) {
+        final int blockRowSize = ((width + 3) / 4) * type.blockSize;
+        final int blockRows = getArrayStorageRequirements(width, height, type) / blockRowSize;
 
-        if ( rgba == null || rgba.length < (width * height * 4) )
+        if ( rgba == null || rgbaOffset < 0 || rgbaStride < 4 * width
+             || (long)rgba.length < rgbaOffset + (long)rgbaStride * (height - 1) + 4 * width )
             throw new IllegalArgumentException("Invalid source image data specified.");
 
+        if ( blocks == null || blockOffset < 0 || blockStride < blockRowSize
+             || (long)blocks.length < blockOffset + (long)blockStride * (blockRows - 1) + blockRowSize )
+            throw new IllegalArgumentException("Invalid target block data specified.");
+    }
+
+    static byte[] checkCompressOutput(final int width, final int height, byte[] blocks, final CompressionType type) {
+        final int storageSize = getArrayStorageRequirements(width, height, type);
+
         if ( blocks == null || blocks.length < storageSize )
             blocks = new byte[storageSize];
 
         return blocks;
     }
 
-    private static void compress(final byte[] rgba, final int mask, final byte[] block, final int offset, final CompressionTask task) {
+    static ByteBuffer checkCompressInput(final ByteBuffer rgba, final int width, final int height, ByteBuffer blocks, final CompressionType type) {
+        final int storageSize = getArrayStorageRequirements(width, height, type);
+
+        if ( rgba == null || rgba.remaining() < getPixelSize(width, height) )
+            throw new IllegalArgumentException("Invalid source image data specified.");
+
+        if ( blocks == null || blocks.remaining() < storageSize )
+            blocks = ByteBuffer.allocate(storageSize);
+
+        return blocks;
+    }
+
+    static void compress(final byte[] rgba, final int mask, final byte[] block, final int offset, final CompressionTask task) {
         final CompressionType type = task.type;
+
+        // reuse the block if the same pixels have been compressed before
+        final BlockCache cache = task.blockCache;
+        if ( cache != null && cache.lookup(rgba, mask, block, offset) )
+            return;
+
         // get the block locations
         final int colourBlock = offset + type.blockOffset;
         final int alphaBlock = offset;
@@ -216,70 +746,337 @@ public final class Squish {
         task.colours.init(rgba, mask, type, task.weightAlpha);
 
         // check the compression type and compress colour
-        final CompressorColourFit fit;
-        if ( task.colours.getCount() == 1 ) // always do a single colour fit
-            fit = task.getSingleColourCompressor();
-        else
-            fit = task.multiColour;
-        fit.init();
-        fit.compress(block, colourBlock);
+        final int count = task.colours.getCount();
+        if ( count == 0 ) { // all pixels are transparent in dxt1, no need for a fit
+            ColourBlock.writeTransparentBlock(block, colourBlock);
+        } else {
+            final CompressorColourFit fit;
+            if ( count == 1 ) // always do a single colour fit
+                fit = task.getSingleColourCompressor();
+            else
+                fit = task.multiColour;
+            fit.init();
+            fit.compress(block, colourBlock);
+        }
 
         // compress alpha separately if necessary
         if ( type == CompressionType.DXT3 )
             task.getAlphaCompressor().compressAlphaDxt3(rgba, mask, block, alphaBlock);
         else if ( type == CompressionType.DXT5 )
             task.getAlphaCompressor().compressAlphaDxt5(rgba, mask, block, alphaBlock);
+
+        if ( cache != null )
+            cache.store(block, offset);
     }
 
     public static byte[] decompressImage(byte[] rgba, final int width, final int height, final byte[] blocks, final CompressionType type) {
         rgba = checkDecompressInput(rgba, width, height, blocks, type);
 
+        decompressBlockRows(blocks, 0, ImageTarget.wrap(rgba, width, height), 0, (height + 3) / 4, type);
+
+        return rgba;
+    }
+
+    // Decompresses a region of a larger compressed surface, starting at
+    // blockOffset with block rows blockStride bytes apart, into a rectangle
+    // of RGBA pixels that starts at rgbaOffset and whose rows are rgbaStride
+    // bytes apart.
+    public static byte[] decompressImage(final byte[] rgba, final int rgbaOffset, final int rgbaStride, final int width, final int height,
+                                         final byte[] blocks, final int blockOffset, final int blockStride, final CompressionType type) {
+        checkRegions(rgba, rgbaOffset, rgbaStride, width, height, blocks, blockOffset, blockStride, type);
+
+        decompressBlockRows(blocks, blockOffset, blockStride, ImageTarget.wrap(rgba, rgbaOffset, rgbaStride, width, height), 0, (height + 3) / 4, type);
+
+        return rgba;
+    }
+
+    // Same as decompressImage for RGBA bytes, but writes pixels of the given channel order.
+    public static byte[] decompressImage(byte[] pixels, final PixelLayout layout, final int width, final int height, final byte[] blocks, final CompressionType type) {
+        pixels = checkDecompressInput(pixels, width, height, blocks, type);
+
+        decompressBlockRows(blocks, 0, ImageTarget.wrap(pixels, layout, width, height), 0, (height + 3) / 4, type);
+
+        return pixels;
+    }
+
+    // Same as decompressImage for RGBA bytes, but writes pixels packed as 0xAARRGGBB ints.
+    // (This is not an overload of decompressImage, so that passing null for
+    // the target stays unambiguous.)
+    public static int[] decompressImageARGB(int[] argb, final int width, final int height, final byte[] blocks, final CompressionType type) {
+        argb = checkDecompressInput(argb, width, height, blocks, type);
+
+        decompressBlockRows(blocks, 0, ImageTarget.wrap(argb, width, height), 0, (height + 3) / 4, type);
+
+        return argb;
+    }
+
+    // Decompresses into the raster (e.g. of a BufferedImage), writing red,
+    // green, blue and optionally alpha to its bands. The pixels of
+    // TYPE_INT_ARGB and TYPE_4BYTE_ABGR images are written directly to
+    // their data buffer.
+    public static WritableRaster decompressImage(final WritableRaster raster, final byte[] blocks, final CompressionType type) {
+        final int storageSize = getArrayStorageRequirements(raster.getWidth(), raster.getHeight(), type);
+
+        if ( blocks == null || blocks.length < storageSize )
+            throw new IllegalArgumentException("Invalid source image data specified.");
+
+        decompressBlockRows(blocks, 0, ImageTarget.wrap(raster), 0, (raster.getHeight() + 3) / 4, type);
+
+        return raster;
+    }
+
+    // Decompresses the image on the given pool by splitting it into stripes
+    // of block rows. The output is identical to the one of decompressImage.
+    public static byte[] decompressImageParallel(byte[] rgba, final int width, final int height, final byte[] blocks, final CompressionType type,
+                                                 final ForkJoinPool pool) {
+        rgba = checkDecompressInput(rgba, width, height, blocks, type);
+
+        final int blockRows = (height + 3) / 4;
+        final int stripeRows = Math.max(1, blockRows / (4 * pool.getParallelism()));
+        pool.invoke(new DecompressionStripe(blocks, ImageTarget.wrap(rgba, width, height), type, 0, blockRows, stripeRows));
+
+        return rgba;
+    }
+
+    private static final class DecompressionStripe extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] blocks;
+        private final ImageTarget target;
+        private final CompressionType type;
+
+        private final int fromRow;
+        private final int toRow;
+        private final int stripeRows;
+
+        DecompressionStripe(final byte[] blocks, final ImageTarget target, final CompressionType type,
+                            final int fromRow, final int toRow, final int stripeRows) {
+            this.blocks = blocks;
+            this.target = target;
+            this.type = type;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.stripeRows = stripeRows;
+        }
+
+        @Override
+        protected void compute() {
+            if ( toRow - fromRow <= stripeRows ) {
+                decompressBlockRows(blocks, 0, target, fromRow, toRow, type);
+            } else {
+                final int mid = (fromRow + toRow) >>> 1;
+                invokeAll(new DecompressionStripe(blocks, target, type, fromRow, mid, stripeRows),
+                          new DecompressionStripe(blocks, target, type, mid, toRow, stripeRows));
+            }
+        }
+    }
+
+    // Reads the blocks from the remaining bytes of blocks and writes the image
+    // starting at the position of rgba. The positions of both buffers are
+    // left unchanged. Heap and direct buffers are accessed in place.
+    public static ByteBuffer decompressImage(ByteBuffer rgba, final int width, final int height, final ByteBuffer blocks, final CompressionType type) {
+        rgba = checkDecompressInput(rgba, width, height, blocks, type);
+
+        decompressBlockRows(blocks, ImageTarget.wrap(rgba, width, height), 0, (height + 3) / 4, type);
+
+        return rgba;
+    }
+
+    // Compresses an image whose pixels are split over several buffers, e.g.
+    // because it is larger than 2 GiB. Each buffer holds RGBA pixel rows
+    // from its position to its limit, a multiple of 4 rows except for the
+    // last buffer. The blocks are written into several buffers likewise,
+    // each holding a whole number of block rows starting at its position.
+    // The positions of all buffers are left unchanged. The image is
+    // processed one row of blocks at a time.
+    // concurrent calls allowed!
+    public static void compressImage(final ByteBuffer[] rgbaChunks, final int width, final int height, final ByteBuffer[] blockChunks,
+                                     final CompressionType type, final CompressionOptions options) {
+        final int blockRowSize = checkChunks(rgbaChunks, width, height, blockChunks, type);
+
+        final CompressionTask task = new CompressionTask(type, options);
+
+        final int stripSize = 4 * 4 * width;
+        int rgbaChunk = 0, rgbaOffset = 0;
+        int blockChunk = 0, blockOffset = 0;
+        for ( int y = 0; y < height; y += 4 ) {
+            // move on to the next buffers once the current ones are used up
+            while ( rgbaOffset == rgbaChunks[rgbaChunk].remaining() ) {
+                ++rgbaChunk;
+                rgbaOffset = 0;
+            }
+            while ( blockOffset == blockChunks[blockChunk].remaining() ) {
+                ++blockChunk;
+                blockOffset = 0;
+            }
+
+            final ByteBuffer strip = rgbaChunks[rgbaChunk].duplicate();
+            strip.position(strip.position() + rgbaOffset);
+            final ByteBuffer blockRow = blockChunks[blockChunk].duplicate();
+            blockRow.position(blockRow.position() + blockOffset);
+
+            compressBlockRows(ImageSource.wrap(strip, width, Math.min(4, height - y)), blockRow, 0, 1, task);
+
+            rgbaOffset += Math.min(stripSize, strip.remaining());
+            blockOffset += blockRowSize;
+        }
+    }
+
+    // Decompresses an image whose blocks are split over several buffers into
+    // several pixel buffers; the reverse of compressImage for buffer chunks.
+    public static void decompressImage(final ByteBuffer[] rgbaChunks, final int width, final int height, final ByteBuffer[] blockChunks,
+                                       final CompressionType type) {
+        final int blockRowSize = checkChunks(rgbaChunks, width, height, blockChunks, type);
+
+        final int stripSize = 4 * 4 * width;
+        int rgbaChunk = 0, rgbaOffset = 0;
+        int blockChunk = 0, blockOffset = 0;
+        for ( int y = 0; y < height; y += 4 ) {
+            // move on to the next buffers once the current ones are used up
+            while ( rgbaOffset == rgbaChunks[rgbaChunk].remaining() ) {
+                ++rgbaChunk;
+                rgbaOffset = 0;
+            }
+            while ( blockOffset == blockChunks[blockChunk].remaining() ) {
+                ++blockChunk;
+                blockOffset = 0;
+            }
+
+            final ByteBuffer strip = rgbaChunks[rgbaChunk].duplicate();
+            strip.position(strip.position() + rgbaOffset);
+            final ByteBuffer blockRow = blockChunks[blockChunk].duplicate();
+            blockRow.position(blockRow.position() + blockOffset);
+
+            decompressBlockRows(blockRow, ImageTarget.wrap(strip, width, Math.min(4, height - y)), 0, 1, type);
+
+            rgbaOffset += Math.min(stripSize, strip.remaining());
+            blockOffset += blockRowSize;
+        }
+    }
+
+    // checks that the chunks hold whole strips of 4 pixel rows and whole block rows
+    // and cover the image, and returns the size of a block row
+    private static int checkChunks(final ByteBuffer[] rgbaChunks, final int width, final int height, final ByteBuffer[] blockChunks,
+                                   final CompressionType type) {
+        final long storageSize = getStorageRequirementsLong(width, height, type);
+        final int blockRowSize = checkArraySize(((width + 3L) / 4) * type.blockSize);
+        final int stripSize = checkArraySize(4L * 4 * width);
+
+        if ( !isChunked(rgbaChunks, stripSize, getPixelSize(width, height)) )
+            throw new IllegalArgumentException("Invalid image data specified.");
+
+        if ( !isChunked(blockChunks, blockRowSize, storageSize) )
+            throw new IllegalArgumentException("Invalid block data specified.");
+
+        return blockRowSize;
+    }
+
+    // whether only the last of the chunks holds a partial unit and the chunks hold at least size bytes
+    private static boolean isChunked(final ByteBuffer[] chunks, final int unit, final long size) {
+        if ( chunks == null )
+            return false;
+
+        long total = 0;
+        for ( ByteBuffer chunk : chunks ) {
+            if ( chunk == null || total % unit != 0 )
+                return false;
+            total += chunk.remaining();
+        }
+        return total >= size;
+    }
+
+    // decompresses the block rows [fromRow, toRow) of the image from the blocks starting at offset,
+    // using its own decoder state
+    private static void decompressBlockRows(final byte[] blocks, final int offset, final ImageTarget target,
+                                            final int fromRow, final int toRow, final CompressionType type) {
+        decompressBlockRows(blocks, offset, ((target.width + 3) / 4) * type.blockSize, target, fromRow, toRow, type);
+    }
+
+    // decompresses the block rows [fromRow, toRow) of the image from the blocks starting at offset,
+    // with the given distance in bytes between the starts of consecutive block rows
+    static void decompressBlockRows(final byte[] blocks, final int offset, final int blockStride, final ImageTarget target,
+                                    final int fromRow, final int toRow, final CompressionType type) {
         final byte[] targetRGBA = new byte[16 * 4];
         final ColourBlock writer = new ColourBlock();
         final CompressorAlpha alphaCompressor = new CompressorAlpha();
 
         // loop over blocks
-        int sourceBlock = 0;
-        for ( int y = 0; y < height; y += 4 ) {
-            for ( int x = 0; x < width; x += 4 ) {
+        for ( int y = 4 * fromRow; y < 4 * toRow; y += 4 ) {
+            int sourceBlock = offset + (y / 4) * blockStride;
+            for ( int x = 0; x < target.width; x += 4 ) {
                 // decompress the block
                 decompress(targetRGBA, blocks, sourceBlock, type, writer, alphaCompressor);
 
                 // write the decompressed pixels to the correct image locations
-                int sourcePixel = 0;
-                for ( int py = 0; py < 4; ++py ) {
-                    for ( int px = 0; px < 4; ++px ) {
-                        // get the target location
-                        int sx = x + px;
-                        int sy = y + py;
-                        if ( sx < width && sy < height ) {
-                            // copy the rgba value
-                            int targetPixel = 4 * (width * sy + sx);
-                            for ( int i = 0; i < 4; ++i )
-                                rgba[targetPixel++] = targetRGBA[sourcePixel++];
-                        } else {
-                            // skip this pixel as its outside the image
-                            sourcePixel += 4;
-                        }
-                    }
-                }
+                target.writeBlock(x, y, targetRGBA);
 
                 // advance
                 sourceBlock += type.blockSize;
             }
         }
+    }
 
-        return rgba;
+    // decompresses the block rows [fromRow, toRow) of the image from the blocks starting at their position
+    static void decompressBlockRows(final ByteBuffer blocks, final ImageTarget target,
+                                    final int fromRow, final int toRow, final CompressionType type) {
+        if ( blocks.hasArray() ) {
+            decompressBlockRows(blocks.array(), blocks.arrayOffset() + blocks.position(), target, fromRow, toRow, type);
+            return;
+        }
+
+        final byte[] targetRGBA = new byte[16 * 4];
+        final byte[] block = new byte[type.blockSize];
+        final ColourBlock writer = new ColourBlock();
+        final CompressorAlpha alphaCompressor = new CompressorAlpha();
+
+        // loop over blocks
+        int sourceBlock = blocks.position() + fromRow * ((target.width + 3) / 4) * type.blockSize;
+        for ( int y = 4 * fromRow; y < 4 * toRow; y += 4 ) {
+            for ( int x = 0; x < target.width; x += 4 ) {
+                // copy the block from the input and decompress it
+                for ( int i = 0; i < type.blockSize; ++i )
+                    block[i] = blocks.get(sourceBlock++);
+                decompress(targetRGBA, block, 0, type, writer, alphaCompressor);
+
+                // write the decompressed pixels to the correct image locations
+                target.writeBlock(x, y, targetRGBA);
+            }
+        }
     }
 
     private static byte[] checkDecompressInput(byte[] rgba, final int width, final int height, final byte[] blocks, final CompressionType type) {
-        final int storageSize = getStorageRequirements(width, height, type);
+        final int storageSize = getArrayStorageRequirements(width, height, type);
 
         if ( blocks == null || blocks.length < storageSize )
             throw new IllegalArgumentException("Invalid source image data specified.");
 
-        if ( rgba == null || rgba.length < (width * height * 4) )
-            rgba = new byte[(width * height * 4)];
+        if ( rgba == null || rgba.length < getPixelSize(width, height) )
+            rgba = new byte[checkArraySize(getPixelSize(width, height))];
+
+        return rgba;
+    }
+
+    private static int[] checkDecompressInput(int[] argb, final int width, final int height, final byte[] blocks, final CompressionType type) {
+        final int storageSize = getArrayStorageRequirements(width, height, type);
+
+        if ( blocks == null || blocks.length < storageSize )
+            throw new IllegalArgumentException("Invalid source image data specified.");
+
+        if ( argb == null || argb.length < getPixelSize(width, height) / 4 )
+            argb = new int[checkArraySize(getPixelSize(width, height) / 4)];
+
+        return argb;
+    }
+
+    private static ByteBuffer checkDecompressInput(ByteBuffer rgba, final int width, final int height, final ByteBuffer blocks, final CompressionType type) {
+        final int storageSize = getArrayStorageRequirements(width, height, type);
+
+        if ( blocks == null || blocks.remaining() < storageSize )
+            throw new IllegalArgumentException("Invalid source image data specified.");
+
+        if ( rgba == null || rgba.remaining() < getPixelSize(width, height) )
+            rgba = ByteBuffer.allocate(checkArraySize(getPixelSize(width, height)));
 
         return rgba;
     }
@@ -0,0 +1,151 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.nio.ByteBuffer;
+
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+import io.github.memo33.jsquish.Squish.PixelLayout;
+
+// A compressor that is configured once and can then be reused for
+// compressing many images without allocating its internal state again.
+// Instances are not thread-safe and should be confined to a single thread.
+// Use a SquishCompressorPool for sharing compressors between threads.
+public final class SquishCompressor {
+
+    private final Squish.CompressionTask task;
+
+    public SquishCompressor(final CompressionType type) {
+        this(type, CompressionOptions.DEFAULT);
+    }
+
+    public SquishCompressor(final CompressionType type, final CompressionOptions options) {
+        this.task = new Squish.CompressionTask(type, options);
+    }
+
+    public CompressionType getType() { return task.type; }
+
+    public CompressionOptions getOptions() { return task.options; }
+
+    // Enables a cache of compressed blocks, so that repeated 4x4 blocks of
+    // pixels are compressed only once. The cache is kept across images and
+    // holds at most maxBlocks blocks, evicting the least recently used ones. A
+    // size of 0 disables the cache. Changing the size discards the cached
+    // blocks and resets the hit and miss counts.
+    public void setBlockCacheSize(final int maxBlocks) {
+        if ( maxBlocks < 0 )
+            throw new IllegalArgumentException("Invalid block cache size specified: " + maxBlocks);
+
+        task.blockCache = maxBlocks == 0 ? null : new BlockCache(maxBlocks, task.type.blockSize);
+    }
+
+    boolean hasBlockCache() {
+        return task.blockCache != null;
+    }
+
+    // the number of blocks that were taken from the block cache
+    public long getBlockCacheHits() {
+        return task.blockCache == null ? 0 : task.blockCache.getHits();
+    }
+
+    // the number of blocks that were not found in the block cache and had to be compressed
+    public long getBlockCacheMisses() {
+        return task.blockCache == null ? 0 : task.blockCache.getMisses();
+    }
+
+    // The methods below are the same as those of Squish, with the
+    // configuration of this compressor.
+
+    // RGBA bytes
+    public byte[] compressImage(final byte[] rgba, final int width, final int height, byte[] blocks) {
+        blocks = Squish.checkCompressInput(rgba, width, height, blocks, task.type);
+
+        Squish.compressBlockRows(ImageSource.wrap(rgba, width, height), blocks, 0, 0, (height + 3) / 4, task);
+
+        return blocks;
+    }
+
+    // a rectangle of RGBA bytes within larger arrays
+    public byte[] compressImage(final byte[] rgba, final int rgbaOffset, final int rgbaStride, final int width, final int height,
+                                final byte[] blocks, final int blockOffset, final int blockStride) {
+        Squish.checkRegions(rgba, rgbaOffset, rgbaStride, width, height, blocks, blockOffset, blockStride, task.type);
+
+        Squish.compressBlockRows(ImageSource.wrap(rgba, rgbaOffset, rgbaStride, width, height), blocks, blockOffset, blockStride, 0, (height + 3) / 4, task);
+
+        return blocks;
+    }
+
+    // the blocks within the dirty rectangles only
+    public byte[] recompressImage(final byte[] rgba, final int width, final int height, final byte[] blocks, final Rectangle... dirtyRects) {
+        Squish.checkRecompressInput(rgba, width, height, blocks, dirtyRects, task.type);
+
+        final ImageSource source = ImageSource.wrap(rgba, width, height);
+        for ( Rectangle dirty : dirtyRects )
+            Squish.compressBlockRect(source, blocks, dirty, task);
+
+        return blocks;
+    }
+
+    // bytes of the given channel order
+    public byte[] compressImage(final byte[] pixels, final PixelLayout layout, final int width, final int height, byte[] blocks) {
+        blocks = Squish.checkCompressInput(pixels, width, height, blocks, task.type);
+
+        Squish.compressBlockRows(ImageSource.wrap(pixels, layout, width, height), blocks, 0, 0, (height + 3) / 4, task);
+
+        return blocks;
+    }
+
+    // pixels packed as 0xAARRGGBB ints
+    public byte[] compressImage(final int[] argb, final int width, final int height, byte[] blocks) {
+        blocks = Squish.checkCompressInput(argb, width, height, blocks, task.type);
+
+        Squish.compressBlockRows(ImageSource.wrap(argb, width, height), blocks, 0, 0, (height + 3) / 4, task);
+
+        return blocks;
+    }
+
+    // the bands of a raster
+    public byte[] compressImage(final Raster raster, byte[] blocks) {
+        blocks = Squish.checkCompressOutput(raster.getWidth(), raster.getHeight(), blocks, task.type);
+
+        Squish.compressBlockRows(ImageSource.wrap(raster), blocks, 0, 0, (raster.getHeight() + 3) / 4, task);
+
+        return blocks;
+    }
+
+    // RGBA bytes in buffers
+    public ByteBuffer compressImage(final ByteBuffer rgba, final int width, final int height, ByteBuffer blocks) {
+        blocks = Squish.checkCompressInput(rgba, width, height, blocks, task.type);
+
+        Squish.compressBlockRows(ImageSource.wrap(rgba, width, height), blocks, 0, (height + 3) / 4, task);
+
+        return blocks;
+    }
+
+}
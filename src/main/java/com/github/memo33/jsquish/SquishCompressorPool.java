@@ -0,0 +1,106 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// A thread-safe pool of SquishCompressors sharing the same configuration.
+// Compressors are created on demand and kept for reuse once they are released.
+public final class SquishCompressorPool {
+
+    private final ConcurrentLinkedQueue<SquishCompressor> idle = new ConcurrentLinkedQueue<SquishCompressor>();
+
+    // the compressors created by this pool and whether they are idle; as
+    // compressors do not override equals, they are compared by identity
+    private final ConcurrentHashMap<SquishCompressor, Boolean> owned = new ConcurrentHashMap<SquishCompressor, Boolean>();
+
+    private final CompressionType type;
+    private final CompressionOptions options;
+
+    public SquishCompressorPool(final CompressionType type) {
+        this(type, CompressionOptions.DEFAULT);
+    }
+
+    public SquishCompressorPool(final CompressionType type, final CompressionOptions options) {
+        this.type = type;
+        this.options = options;
+    }
+
+    // Takes an idle compressor from the pool, or creates a new one if there is
+    // none. The compressor may be used exclusively by the calling thread until
+    // it is handed back with release.
+    public SquishCompressor acquire() {
+        SquishCompressor compressor = idle.poll();
+        if ( compressor == null )
+            compressor = new SquishCompressor(type, options);
+        owned.put(compressor, Boolean.FALSE);
+        return compressor;
+    }
+
+    // Hands a compressor back to the pool. It must not be used by the caller
+    // afterwards.
+    public void release(final SquishCompressor compressor) {
+        // only take back compressors of this pool that are in use, so that
+        // releasing one twice does not hand it to two threads at once
+        if ( !owned.replace(compressor, Boolean.FALSE, Boolean.TRUE) )
+            throw new IllegalArgumentException("Compressor not acquired from the pool specified.");
+
+        // the compressors of the pool are interchangeable, which they are not
+        // with a block cache, so such a compressor is dropped from the pool
+        if ( compressor.hasBlockCache() ) {
+            owned.remove(compressor);
+            throw new IllegalArgumentException("Compressor with a block cache specified.");
+        }
+
+        idle.offer(compressor);
+    }
+
+    // concurrent calls allowed!
+    public byte[] compressImage(final byte[] rgba, final int width, final int height, final byte[] blocks) {
+        final SquishCompressor compressor = acquire();
+        try {
+            return compressor.compressImage(rgba, width, height, blocks);
+        } finally {
+            release(compressor);
+        }
+    }
+
+    // concurrent calls allowed!
+    public ByteBuffer compressImage(final ByteBuffer rgba, final int width, final int height, final ByteBuffer blocks) {
+        final SquishCompressor compressor = acquire();
+        try {
+            return compressor.compressImage(rgba, width, height, blocks);
+        } finally {
+            release(compressor);
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Compresses and decompresses images stored in files, e.g. raw RGBA dumps
+// that are too large to be read into memory. Both files are memory-mapped in
+// windows of whole block rows, and the blocks are compressed directly from
+// one mapping into the other, so no copy of the image is made on the heap.
+// The parallel variants process several windows at the same time.
+// The windows are unmapped by the garbage collector once they are no longer
+// referenced, so on Windows the files may stay locked until then.
+public final class SquishFiles {
+
+    // the size of the pixels of a window that is mapped at once
+    private static final long WINDOW_SIZE = 32 << 20;
+
+    private SquishFiles() {
+    }
+
+    // Compresses the raw RGBA pixels of the image file into a file of blocks,
+    // which is created or overwritten.
+    public static void compressFile(final Path rgbaFile, final int width, final int height, final Path blockFile,
+                                    final CompressionType type, final CompressionOptions options) throws IOException {
+        compressFile(rgbaFile, width, height, blockFile, type, options, null);
+    }
+
+    // concurrent calls allowed!
+    public static void compressFileParallel(final Path rgbaFile, final int width, final int height, final Path blockFile,
+                                            final CompressionType type, final CompressionOptions options,
+                                            final ForkJoinPool pool) throws IOException {
+        compressFile(rgbaFile, width, height, blockFile, type, options, pool);
+    }
+
+    // Decompresses the file of blocks into a file of raw RGBA pixels,
+    // which is created or overwritten.
+    public static void decompressFile(final Path blockFile, final int width, final int height, final Path rgbaFile, final CompressionType type) throws IOException {
+        decompressFile(blockFile, width, height, rgbaFile, type, null);
+    }
+
+    // concurrent calls allowed!
+    public static void decompressFileParallel(final Path blockFile, final int width, final int height, final Path rgbaFile, final CompressionType type,
+                                              final ForkJoinPool pool) throws IOException {
+        decompressFile(blockFile, width, height, rgbaFile, type, pool);
+    }
+
+    private static void compressFile(final Path rgbaFile, final int width, final int height, final Path blockFile,
+                                     final CompressionType type, final CompressionOptions options,
+                                     final ForkJoinPool pool) throws IOException {
+        Squish.getStorageRequirementsLong(width, height, type); // validates the dimensions
+        final long stripSize = 4L * 4 * width;
+        final long blockRowSize = ((width + 3L) / 4) * type.blockSize;
+
+        try ( FileChannel in = FileChannel.open(rgbaFile, StandardOpenOption.READ) ) {
+            // check the input before an existing output file is truncated
+            if ( in.size() < Squish.getPixelSize(width, height) )
+                throw new IllegalArgumentException("Invalid source image data specified.");
+
+            try ( FileChannel out = FileChannel.open(blockFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                     StandardOpenOption.READ, StandardOpenOption.WRITE) ) {
+                processWindows(width, height, pool, (fromRow, toRow) -> {
+                    final int rows = Math.min(4 * toRow, height) - 4 * fromRow;
+                    final MappedByteBuffer rgba = in.map(FileChannel.MapMode.READ_ONLY, fromRow * stripSize, 4L * width * rows);
+                    final MappedByteBuffer blocks = out.map(FileChannel.MapMode.READ_WRITE, fromRow * blockRowSize, (toRow - fromRow) * blockRowSize);
+
+                    final Squish.CompressionTask task = new Squish.CompressionTask(type, options);
+                    Squish.compressBlockRows(ImageSource.wrap(rgba, width, rows), blocks, 0, toRow - fromRow, task);
+                });
+            }
+        }
+    }
+
+    private static void decompressFile(final Path blockFile, final int width, final int height, final Path rgbaFile, final CompressionType type,
+                                       final ForkJoinPool pool) throws IOException {
+        final long storageSize = Squish.getStorageRequirementsLong(width, height, type);
+        final long stripSize = 4L * 4 * width;
+        final long blockRowSize = ((width + 3L) / 4) * type.blockSize;
+
+        try ( FileChannel in = FileChannel.open(blockFile, StandardOpenOption.READ) ) {
+            // check the input before an existing output file is truncated
+            if ( in.size() < storageSize )
+                throw new IllegalArgumentException("Invalid source image data specified.");
+
+            try ( FileChannel out = FileChannel.open(rgbaFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                     StandardOpenOption.READ, StandardOpenOption.WRITE) ) {
+                processWindows(width, height, pool, (fromRow, toRow) -> {
+                    final int rows = Math.min(4 * toRow, height) - 4 * fromRow;
+                    final MappedByteBuffer blocks = in.map(FileChannel.MapMode.READ_ONLY, fromRow * blockRowSize, (toRow - fromRow) * blockRowSize);
+                    final MappedByteBuffer rgba = out.map(FileChannel.MapMode.READ_WRITE, fromRow * stripSize, 4L * width * rows);
+
+                    Squish.decompressBlockRows(blocks, ImageTarget.wrap(rgba, width, rows), 0, toRow - fromRow, type);
+                });
+            }
+        }
+    }
+
+    // processes the block rows of the image window by window
+    private interface WindowProcessor {
+        void process(int fromRow, int toRow) throws IOException;
+    }
+
+    private static void processWindows(final int width, final int height, final ForkJoinPool pool, final WindowProcessor processor) throws IOException {
+        final int blockRows = (height + 3) / 4;
+        int windowRows = (int)Math.max(1, Math.min(blockRows, WINDOW_SIZE / (4L * 4 * width)));
+
+        if ( pool == null ) {
+            for ( int row = 0; row < blockRows; row += windowRows )
+                processor.process(row, Math.min(row + windowRows, blockRows));
+        } else {
+            // use smaller windows if needed to keep all threads busy
+            windowRows = Math.max(1, Math.min(windowRows, blockRows / (4 * pool.getParallelism())));
+            try {
+                pool.invoke(new Window(processor, 0, blockRows, windowRows));
+            } catch ( UncheckedIOException e ) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static final class Window extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient WindowProcessor processor;
+
+        private final int fromRow;
+        private final int toRow;
+        private final int windowRows;
+
+        Window(final WindowProcessor processor, final int fromRow, final int toRow, final int windowRows) {
+            this.processor = processor;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.windowRows = windowRows;
+        }
+
+        @Override
+        protected void compute() {
+            if ( toRow - fromRow <= windowRows ) {
+                try {
+                    processor.process(fromRow, toRow);
+                } catch ( IOException e ) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                // split at a window boundary
+                final int mid = fromRow + ((toRow - fromRow) / windowRows + 1) / 2 * windowRows;
+                invokeAll(new Window(processor, fromRow, mid, windowRows),
+                          new Window(processor, mid, toRow, windowRows));
+            }
+        }
+    }
+
+}
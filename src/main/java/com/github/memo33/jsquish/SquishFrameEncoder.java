@@ -0,0 +1,151 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// An encoder for successive frames of the same size, such as video or
+// animation frames, that exploits the similarity of consecutive frames.
+// Blocks whose pixels are identical to those of the previous frame are not
+// compressed again, but their previous compressed block is reused. With
+// CLUSTER_FIT, the changed blocks are ordered along the endpoint axis of the
+// co-located block of the previous frame instead of computing their
+// principle component from scratch; the iterative refinement of the cluster
+// fit then moves on from there.
+// Instances are not thread-safe and should be confined to a single thread.
+public final class SquishFrameEncoder {
+
+    private static final float[] ZERO_AXIS = new float[3];
+
+    private final Squish.CompressionTask task;
+    private final int width;
+    private final int height;
+
+    // the compressed blocks, pixels, masks and endpoint axes of the previous frame
+    private final byte[] blocks;
+    private final byte[] pixels;
+    private final int[] masks;
+    private final float[] axes;
+    private boolean hasPrevious = false;
+
+    private int skippedBlocks = 0;
+
+    public SquishFrameEncoder(final int width, final int height, final CompressionType type) {
+        this(width, height, type, CompressionOptions.DEFAULT);
+    }
+
+    public SquishFrameEncoder(final int width, final int height, final CompressionType type, final CompressionOptions options) {
+        final int storageSize = Squish.getArrayStorageRequirements(width, height, type);
+        final int blockCount = storageSize / type.blockSize;
+
+        this.task = new Squish.CompressionTask(type, options);
+        this.width = width;
+        this.height = height;
+        this.blocks = new byte[storageSize];
+        this.pixels = new byte[blockCount * 16 * 4];
+        this.masks = new int[blockCount];
+        this.axes = new float[blockCount * 3];
+    }
+
+    public int getWidth() { return width; }
+
+    public int getHeight() { return height; }
+
+    public CompressionType getType() { return task.type; }
+
+    public CompressionOptions getOptions() { return task.options; }
+
+    // the number of blocks of the last frame that were unchanged and not
+    // compressed again
+    public int getSkippedBlocks() {
+        return skippedBlocks;
+    }
+
+    // Forgets the previous frame, so that the next frame is compressed completely.
+    public void reset() {
+        hasPrevious = false;
+    }
+
+    // Compresses the next frame of RGBA pixels into blocks if it is large
+    // enough, or into a new array otherwise, which is returned.
+    public byte[] encodeFrame(final byte[] rgba, byte[] blocks) {
+        blocks = Squish.checkCompressInput(rgba, width, height, blocks, task.type);
+
+        final ImageSource source = ImageSource.wrap(rgba, width, height);
+        final CompressionType type = task.type;
+        final byte[] sourceRGBA = task.sourceRGBA;
+        final CompressorCluster cluster = task.multiColour instanceof CompressorCluster ? (CompressorCluster)task.multiColour : null;
+
+        skippedBlocks = 0;
+        for ( int y = 0, i = 0; y < height; y += 4 ) {
+            for ( int x = 0; x < width; x += 4, ++i ) {
+                final int mask = source.readBlock(x, y, sourceRGBA);
+
+                // reuse the previous block if the pixels did not change
+                if ( hasPrevious && isUnchanged(sourceRGBA, mask, i) ) {
+                    ++skippedBlocks;
+                    continue;
+                }
+                masks[i] = mask;
+                System.arraycopy(sourceRGBA, 0, pixels, 16 * 4 * i, 16 * 4);
+
+                // start from the previous axis, if any, and remember the new one
+                if ( cluster != null ) {
+                    if ( hasPrevious )
+                        cluster.setStartAxis(axes, 3 * i);
+                    else
+                        cluster.setStartAxis(ZERO_AXIS, 0);
+                }
+                Squish.compress(sourceRGBA, mask, this.blocks, i * type.blockSize, task);
+                if ( cluster != null )
+                    cluster.getBestAxis(axes, 3 * i);
+            }
+        }
+        hasPrevious = true;
+
+        System.arraycopy(this.blocks, 0, blocks, 0, this.blocks.length);
+        return blocks;
+    }
+
+    // compares the enabled pixels of the block with those of the previous frame
+    private boolean isUnchanged(final byte[] rgba, final int mask, final int i) {
+        if ( mask != masks[i] )
+            return false;
+
+        final int offset = 16 * 4 * i;
+        for ( int j = 0; j < 16; ++j ) {
+            if ( (mask & (1 << j)) == 0 )
+                continue;
+            for ( int k = 4 * j; k < 4 * j + 4; ++k ) {
+                if ( rgba[k] != pixels[offset + k] )
+                    return false;
+            }
+        }
+        return true;
+    }
+
+}
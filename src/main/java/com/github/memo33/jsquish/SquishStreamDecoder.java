@@ -0,0 +1,145 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// A pull-style decoder that decompresses an image one row of blocks at a
+// time, so that the decompressed image does not need to be held in memory as
+// a whole. Each row of blocks is decompressed into a strip of 4 rows of RGBA
+// pixels (fewer for the last strip if the height is not a multiple of 4).
+// Instances are not thread-safe and should be confined to a single thread.
+public final class SquishStreamDecoder {
+
+    // Receives the decompressed strips of an image.
+    public interface StripConsumer {
+        // receives the strip of the given number of pixel rows, starting at row
+        // y, whose pixels are only valid during this call
+        void accept(byte[] rgba, int y, int rows) throws IOException;
+    }
+
+    private final CompressionType type;
+    private final int width;
+    private final int height;
+    private final byte[] blockRow;
+
+    // the number of pixel rows decompressed so far
+    private int row = 0;
+
+    public SquishStreamDecoder(final int width, final int height, final CompressionType type) {
+        Squish.getStorageRequirementsLong(width, height, type); // validates the dimensions
+
+        this.type = type;
+        this.width = width;
+        this.height = height;
+        this.blockRow = new byte[Squish.checkArraySize(((width + 3L) / 4) * type.blockSize)];
+    }
+
+    public int getWidth() { return width; }
+
+    public int getHeight() { return height; }
+
+    public CompressionType getType() { return type; }
+
+    // the number of bytes of one row of blocks, as consumed per strip
+    public int getBlockRowSize() {
+        return blockRow.length;
+    }
+
+    // the number of pixel rows of the next strip, or 0 if all strips have been decoded
+    public int getStripHeight() {
+        return Math.min(4, height - row);
+    }
+
+    public boolean isFinished() {
+        return row == height;
+    }
+
+    // Decompresses the next row of blocks at blockOffset into a strip of
+    // getStripHeight() rows of RGBA pixels, which is stored in rgba if it is
+    // large enough, or in a new array otherwise, and returned.
+    public byte[] decodeStrip(final byte[] blocks, final int blockOffset, byte[] rgba) {
+        if ( isFinished() )
+            throw new IllegalStateException("All strips of the image have been decoded.");
+
+        if ( blocks == null || blockOffset < 0 || blocks.length - blockOffset < blockRow.length )
+            throw new IllegalArgumentException("Invalid source block data specified.");
+
+        final int stripHeight = getStripHeight();
+        if ( rgba == null || rgba.length < 4L * width * stripHeight )
+            rgba = new byte[Squish.checkArraySize(4L * 4 * width)];
+
+        Squish.decompressBlockRows(blocks, blockOffset, blockRow.length, ImageTarget.wrap(rgba, width, stripHeight), 0, 1, type);
+
+        row += stripHeight;
+        return rgba;
+    }
+
+    // Reads the next getBlockRowSize() bytes of blocks from the channel and
+    // decompresses them into a strip of pixels like decodeStrip. Throws an
+    // EOFException if the channel ends before the row of blocks.
+    public byte[] readStrip(final ReadableByteChannel channel, final byte[] rgba) throws IOException {
+        if ( isFinished() )
+            throw new IllegalStateException("All strips of the image have been decoded.");
+
+        final ByteBuffer buffer = ByteBuffer.wrap(blockRow);
+        while ( buffer.hasRemaining() ) {
+            if ( channel.read(buffer) < 0 )
+                throw new EOFException("Compressed image ended after " + row + " of " + height + " rows.");
+        }
+
+        return decodeStrip(blockRow, 0, rgba);
+    }
+
+    // Reads the remaining rows of blocks from the channel and passes each
+    // decompressed strip to the consumer, reusing a single strip buffer.
+    public void decode(final ReadableByteChannel channel, final StripConsumer consumer) throws IOException {
+        final byte[] rgba = new byte[Squish.checkArraySize(4L * 4 * width)];
+        while ( !isFinished() ) {
+            final int y = row;
+            final int stripHeight = getStripHeight();
+            readStrip(channel, rgba);
+            consumer.accept(rgba, y, stripHeight);
+        }
+    }
+
+    // Reads the remaining rows of blocks from the input channel and writes the
+    // decompressed RGBA pixels row by row to the output channel.
+    public void decode(final ReadableByteChannel in, final WritableByteChannel out) throws IOException {
+        decode(in, (rgba, y, rows) -> {
+            final ByteBuffer buffer = ByteBuffer.wrap(rgba, 0, width * rows * 4);
+            while ( buffer.hasRemaining() )
+                out.write(buffer);
+        });
+    }
+
+}
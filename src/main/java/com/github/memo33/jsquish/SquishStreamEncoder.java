@@ -0,0 +1,121 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// A push-style encoder that compresses an image strip by strip, so that the
+// image does not need to be held in memory as a whole. Each strip consists of
+// 4 rows of RGBA pixels (fewer for the last strip if the height is not a
+// multiple of 4) and is compressed into one row of blocks. The block rows of
+// all strips together form the same compressed image as Squish.compressImage.
+// Instances are not thread-safe and should be confined to a single thread.
+public final class SquishStreamEncoder {
+
+    private final Squish.CompressionTask task;
+    private final int width;
+    private final int height;
+    private final byte[] blockRow;
+
+    // the number of pixel rows compressed so far
+    private int row = 0;
+
+    public SquishStreamEncoder(final int width, final int height, final CompressionType type) {
+        this(width, height, type, CompressionOptions.DEFAULT);
+    }
+
+    public SquishStreamEncoder(final int width, final int height, final CompressionType type, final CompressionOptions options) {
+        Squish.getStorageRequirementsLong(width, height, type); // validates the dimensions
+
+        this.task = new Squish.CompressionTask(type, options);
+        this.width = width;
+        this.height = height;
+        this.blockRow = new byte[Squish.checkArraySize(((width + 3L) / 4) * type.blockSize)];
+    }
+
+    public int getWidth() { return width; }
+
+    public int getHeight() { return height; }
+
+    public CompressionType getType() { return task.type; }
+
+    public CompressionOptions getOptions() { return task.options; }
+
+    // the number of bytes of one row of blocks, as emitted per strip
+    public int getBlockRowSize() {
+        return blockRow.length;
+    }
+
+    // the number of pixel rows of the next strip, or 0 if all strips have been encoded
+    public int getStripHeight() {
+        return Math.min(4, height - row);
+    }
+
+    public boolean isFinished() {
+        return row == height;
+    }
+
+    // Compresses the next strip of getStripHeight() rows of RGBA pixels into
+    // a row of blocks, which is stored in blocks if it is large enough, or in
+    // a new array otherwise, and returned.
+    public byte[] encodeStrip(final byte[] rgba, byte[] blocks) {
+        if ( blocks == null || blocks.length < blockRow.length )
+            blocks = new byte[blockRow.length];
+
+        encodeStrip(rgba, blocks, 0);
+
+        return blocks;
+    }
+
+    // Compresses the next strip of getStripHeight() rows of RGBA pixels and
+    // writes the getBlockRowSize() bytes of blocks to the channel.
+    public void writeStrip(final byte[] rgba, final WritableByteChannel channel) throws IOException {
+        encodeStrip(rgba, blockRow, 0);
+
+        final ByteBuffer buffer = ByteBuffer.wrap(blockRow);
+        while ( buffer.hasRemaining() )
+            channel.write(buffer);
+    }
+
+    private void encodeStrip(final byte[] rgba, final byte[] blocks, final int offset) {
+        if ( isFinished() )
+            throw new IllegalStateException("All strips of the image have been encoded.");
+
+        final int stripHeight = getStripHeight();
+        if ( rgba == null || rgba.length < 4L * width * stripHeight )
+            throw new IllegalArgumentException("Invalid source image data specified.");
+
+        Squish.compressBlockRows(ImageSource.wrap(rgba, width, stripHeight), blocks, offset, 0, 1, task);
+
+        row += stripHeight;
+    }
+
+}
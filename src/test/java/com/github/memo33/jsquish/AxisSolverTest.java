@@ -0,0 +1,88 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.AxisSolver;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+public class AxisSolverTest {
+
+    // the colours of the block lie along a random line, with a little noise
+    private static byte[] createBlock(final Random random) {
+        final float dx = random.nextFloat() - 0.5f;
+        final float dy = random.nextFloat() - 0.5f;
+        final float dz = random.nextFloat() - 0.5f;
+        final int cx = 64 + random.nextInt(128);
+        final int cy = 64 + random.nextInt(128);
+        final int cz = 64 + random.nextInt(128);
+
+        final byte[] rgba = new byte[16 * 4];
+        for ( int i = 0; i < 16; ++i ) {
+            final float t = 100 * (random.nextFloat() - 0.5f);
+            rgba[4 * i] = (byte)clamp(cx + t * dx + random.nextInt(5) - 2);
+            rgba[4 * i + 1] = (byte)clamp(cy + t * dy + random.nextInt(5) - 2);
+            rgba[4 * i + 2] = (byte)clamp(cz + t * dz + random.nextInt(5) - 2);
+            rgba[4 * i + 3] = (byte)0xff;
+        }
+        return rgba;
+    }
+
+    private static int clamp(final float value) {
+        return Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    @Test
+    public void powerIterationAgreesWithAnalytic() {
+        final Random random = new Random(9);
+        final ColourSet colours = new ColourSet();
+        final Matrix covariance = new Matrix();
+        final Vec analytic = new Vec();
+        final Vec power = new Vec();
+
+        for ( int n = 0; n < 1000; ++n ) {
+            colours.init(createBlock(random), 0xffff, CompressionType.DXT1, false);
+            Matrix.computeWeightedCovariance(colours, covariance);
+            AxisSolver.ANALYTIC.computePrincipleComponent(covariance, analytic);
+            AxisSolver.POWER_ITERATION.computePrincipleComponent(covariance, power);
+
+            // the axes may point in opposite directions
+            final float dot = analytic.x() * power.x() + analytic.y() * power.y() + analytic.z() * power.z();
+            final float cos = Math.abs(dot) / (length(analytic) * length(power));
+            assertTrue("block " + n + ": " + cos, cos > 0.999f);
+        }
+    }
+
+    private static float length(final Vec v) {
+        return (float)Math.sqrt(v.x() * v.x() + v.y() * v.y() + v.z() * v.z());
+    }
+
+}
@@ -0,0 +1,131 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+public class BlockCacheTest {
+
+    private static byte[] pixels(final int value) {
+        final byte[] rgba = new byte[16 * 4];
+        Arrays.fill(rgba, (byte)value);
+        return rgba;
+    }
+
+    private static byte[] block(final int value) {
+        final byte[] block = new byte[8];
+        Arrays.fill(block, (byte)value);
+        return block;
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        final BlockCache cache = new BlockCache(2, 8);
+        final byte[] block = new byte[8];
+
+        assertFalse(cache.lookup(pixels(1), 0xffff, block, 0));
+        cache.store(block(1), 0);
+        assertFalse(cache.lookup(pixels(2), 0xffff, block, 0));
+        cache.store(block(2), 0);
+
+        // touches 1, so that 2 is evicted by 3
+        assertTrue(cache.lookup(pixels(1), 0xffff, block, 0));
+        assertArrayEquals(block(1), block);
+        assertFalse(cache.lookup(pixels(3), 0xffff, block, 0));
+        cache.store(block(3), 0);
+
+        assertFalse(cache.lookup(pixels(2), 0xffff, block, 0));
+        assertTrue(cache.lookup(pixels(3), 0xffff, block, 0));
+        assertArrayEquals(block(3), block);
+        assertTrue(cache.lookup(pixels(1), 0xffff, block, 0));
+        assertArrayEquals(block(1), block);
+
+        assertEquals(3, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void ignoreDisabledPixels() {
+        final BlockCache cache = new BlockCache(2, 8);
+        final byte[] block = new byte[16];
+
+        final byte[] rgba = pixels(1);
+        assertFalse(cache.lookup(rgba, 0x00ff, block, 8));
+        cache.store(block(7), 0);
+
+        // the pixels outside of the mask do not matter
+        Arrays.fill(rgba, 32, 64, (byte)9);
+        assertTrue(cache.lookup(rgba, 0x00ff, block, 8));
+        assertArrayEquals(block(7), Arrays.copyOfRange(block, 8, 16));
+        // but the mask does
+        assertFalse(cache.lookup(rgba, 0xffff, block, 8));
+    }
+
+    @Test
+    public void compressorCountsHits() {
+        final int width = 16, height = 12;
+        final byte[] rgba = new byte[width * height * 4];
+        for ( int i = 0; i < rgba.length; i += 4 ) {
+            // the left and right halves of the image repeat a different block each
+            final int x = (i / 4) % width;
+            rgba[i] = (byte)(x % 4 * 60 + (x < 8 ? 0 : 15));
+            rgba[i + 1] = (byte)0x80;
+            rgba[i + 2] = (byte)(x < 8 ? 0x20 : 0xe0);
+            rgba[i + 3] = (byte)0xff;
+        }
+
+        for ( CompressionType type : CompressionType.values() ) {
+            final SquishCompressor compressor = new SquishCompressor(type, CompressionOptions.DEFAULT);
+            compressor.setBlockCacheSize(16);
+            final byte[] blocks = compressor.compressImage(rgba, width, height, null);
+
+            assertArrayEquals(type.toString(), Squish.compressImage(rgba, width, height, null, type,
+                                                                    CompressionOptions.DEFAULT), blocks);
+            assertEquals(2, compressor.getBlockCacheMisses());
+            assertEquals(10, compressor.getBlockCacheHits());
+
+            // the cache is kept across images
+            compressor.compressImage(rgba, width, height, blocks);
+            assertEquals(2, compressor.getBlockCacheMisses());
+            assertEquals(22, compressor.getBlockCacheHits());
+
+            compressor.setBlockCacheSize(0);
+            assertEquals(0, compressor.getBlockCacheMisses());
+            assertEquals(0, compressor.getBlockCacheHits());
+        }
+    }
+
+}
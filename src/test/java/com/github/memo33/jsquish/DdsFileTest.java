@@ -0,0 +1,142 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+public class DdsFileTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static final TestImage IMAGE = TestImage.createAll().get(1); // 37 x 21
+
+    private static byte[] getBytes(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void writeAndOpenMipMaps() throws IOException {
+        for ( CompressionType type : CompressionType.values() ) {
+            final Path file = folder.newFile().toPath();
+            DdsFile.write(file, IMAGE.rgba, IMAGE.width, IMAGE.height, true, type, CompressionOptions.DEFAULT);
+
+            final DdsFile dds = DdsFile.open(file);
+            assertEquals(IMAGE.width, dds.getWidth());
+            assertEquals(IMAGE.height, dds.getHeight());
+            assertEquals(type, dds.getType());
+            assertEquals(6, dds.getMipMapCount());
+
+            final byte[] blocks = Squish.compressImage(IMAGE.rgba, IMAGE.width, IMAGE.height, null, type);
+            assertArrayEquals(type.toString(), blocks, getBytes(dds.getLevel(0)));
+            assertArrayEquals(type.toString(), Squish.decompressImage(null, IMAGE.width, IMAGE.height, blocks, type), dds.decompressLevel(0, null));
+
+            long size = 4 + 124;
+            for ( int i = 0; i < dds.getMipMapCount(); i++ ) {
+                assertEquals(Math.max(1, IMAGE.width >> i), dds.getWidth(i));
+                assertEquals(Math.max(1, IMAGE.height >> i), dds.getHeight(i));
+                assertEquals(Squish.getStorageRequirements(dds.getWidth(i), dds.getHeight(i), type), dds.getLevel(i).remaining());
+                size += dds.getLevel(i).remaining();
+            }
+            assertEquals(1, dds.getWidth(5));
+            assertEquals(1, dds.getHeight(5));
+            assertEquals(size, Files.size(file));
+        }
+    }
+
+    @Test
+    public void writeHeaderFields() throws IOException {
+        final Path file = folder.newFile().toPath();
+        DdsFile.write(file, IMAGE.rgba, IMAGE.width, IMAGE.height, true, CompressionType.DXT5, CompressionOptions.DEFAULT.withMethod(CompressionMethod.RANGE_FIT));
+
+        final ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x20534444, header.getInt(0)); // "DDS "
+        assertEquals(124, header.getInt(4));
+        assertEquals(0x1 | 0x2 | 0x4 | 0x1000 | 0x20000 | 0x80000, header.getInt(8)); // caps, height, width, pixel format, mip map count, linear size
+        assertEquals(IMAGE.height, header.getInt(12));
+        assertEquals(IMAGE.width, header.getInt(16));
+        assertEquals(Squish.getStorageRequirements(IMAGE.width, IMAGE.height, CompressionType.DXT5), header.getInt(20));
+        assertEquals(6, header.getInt(28));
+        assertEquals(32, header.getInt(76));
+        assertEquals(0x4, header.getInt(80)); // four cc
+        assertEquals(0x35545844, header.getInt(84)); // "DXT5"
+        assertEquals(0x1000 | 0x8 | 0x400000, header.getInt(108)); // texture, complex, mip map
+    }
+
+    @Test
+    public void writeAndOpenLevels() throws IOException {
+        final Path file = folder.newFile().toPath();
+        final byte[] blocks = Squish.compressImage(IMAGE.rgba, IMAGE.width, IMAGE.height, null, CompressionType.DXT1);
+        DdsFile.write(file, IMAGE.width, IMAGE.height, CompressionType.DXT1, blocks);
+
+        final ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x1 | 0x2 | 0x4 | 0x1000 | 0x80000, header.getInt(8));
+        assertEquals(0x1000, header.getInt(108));
+        assertEquals(0x31545844, header.getInt(84)); // "DXT1"
+
+        final DdsFile dds = DdsFile.open(file);
+        assertEquals(1, dds.getMipMapCount());
+        assertEquals(CompressionType.DXT1, dds.getType());
+        assertArrayEquals(blocks, getBytes(dds.getLevel(0)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectOtherFiles() throws IOException {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, new byte[256]);
+        DdsFile.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectTruncatedFile() throws IOException {
+        final Path file = folder.newFile().toPath();
+        DdsFile.write(file, IMAGE.rgba, IMAGE.width, IMAGE.height, true, CompressionType.DXT3, CompressionOptions.DEFAULT.withMethod(CompressionMethod.RANGE_FIT));
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE) ) {
+            channel.truncate(channel.size() - 1);
+        }
+        DdsFile.open(file);
+    }
+
+}
@@ -0,0 +1,125 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Compresses and decompresses the test images through heap, sliced and
+// direct buffers and compares the results with those for arrays.
+public class SquishBufferTest {
+
+    // a buffer of the bytes, starting at position 3 of a larger buffer that
+    // is sliced at offset 5
+    private static ByteBuffer sliced(final byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 11);
+        buffer.position(5);
+        final ByteBuffer slice = buffer.slice();
+        slice.position(3);
+        slice.put(bytes);
+        slice.position(3);
+        return slice;
+    }
+
+    private static ByteBuffer direct(final byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    private static byte[] remaining(final ByteBuffer buffer, final int length) {
+        final byte[] bytes = new byte[length];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void compressBuffers() {
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( CompressionMethod method : CompressionMethod.values() ) {
+                for ( TestImage image : TestImage.createAll() ) {
+                    final String message = type + " " + method + " " + image.width + "x" + image.height;
+                    final byte[] blocks = Squish.compressImage(image.rgba, image.width, image.height, null, type, CompressionOptions.DEFAULT.withMethod(method));
+
+                    final ByteBuffer heap = Squish.compressImage(ByteBuffer.wrap(image.rgba), image.width, image.height, null,
+                                                                 type, CompressionOptions.DEFAULT.withMethod(method));
+                    assertArrayEquals(message + ": heap", blocks, remaining(heap, blocks.length));
+
+                    final ByteBuffer source = sliced(image.rgba);
+                    final ByteBuffer target = sliced(new byte[blocks.length]);
+                    assertEquals(message + ": sliced", target,
+                                 Squish.compressImage(source, image.width, image.height, target, type, CompressionOptions.DEFAULT.withMethod(method)));
+                    assertArrayEquals(message + ": sliced", blocks, remaining(target, blocks.length));
+                    assertEquals(message + ": source position", 3, source.position());
+                    assertEquals(message + ": target position", 3, target.position());
+
+                    final ByteBuffer directTarget = ByteBuffer.allocateDirect(blocks.length);
+                    Squish.compressImage(direct(image.rgba), image.width, image.height, directTarget, type, CompressionOptions.DEFAULT.withMethod(method));
+                    assertArrayEquals(message + ": direct", blocks, remaining(directTarget, blocks.length));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decompressBuffers() {
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                final String message = type + " " + image.width + "x" + image.height;
+                final byte[] blocks = Squish.compressImage(image.rgba, image.width, image.height, null, type);
+                final byte[] rgba = Squish.decompressImage(null, image.width, image.height, blocks, type);
+
+                final ByteBuffer heap = Squish.decompressImage(null, image.width, image.height, ByteBuffer.wrap(blocks), type);
+                assertArrayEquals(message + ": heap", rgba, remaining(heap, rgba.length));
+
+                final ByteBuffer source = sliced(blocks);
+                final ByteBuffer target = sliced(new byte[rgba.length]);
+                Squish.decompressImage(target, image.width, image.height, source, type);
+                assertArrayEquals(message + ": sliced", rgba, remaining(target, rgba.length));
+                assertEquals(message + ": source position", 3, source.position());
+                assertEquals(message + ": target position", 3, target.position());
+
+                final ByteBuffer directTarget = ByteBuffer.allocateDirect(rgba.length);
+                Squish.decompressImage(directTarget, image.width, image.height, direct(blocks), type);
+                assertArrayEquals(message + ": direct", rgba, remaining(directTarget, rgba.length));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectTooFewPixels() {
+        Squish.compressImage(ByteBuffer.allocate(4 * 4 * 4 - 1), 4, 4, null, CompressionType.DXT1);
+    }
+
+}
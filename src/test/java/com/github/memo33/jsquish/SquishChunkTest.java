@@ -0,0 +1,152 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Compresses and decompresses the test images split over several buffers.
+public class SquishChunkTest {
+
+    // Splits the bytes into chunks of the given numbers of units, followed by
+    // a last chunk that takes the rest. The chunks alternate between heap buffers starting
+    // at position 3 and direct buffers.
+    private static ByteBuffer[] split(final byte[] bytes, final int unit, final int... units) {
+        final ByteBuffer[] chunks = new ByteBuffer[units.length + 1];
+        int offset = 0;
+        for ( int i = 0; i < chunks.length; i++ ) {
+            final int length = i < units.length ? units[i] * unit : bytes.length - offset;
+            final ByteBuffer chunk;
+            if ( i % 2 == 0 ) {
+                chunk = ByteBuffer.allocate(length + 3);
+                chunk.position(3);
+            } else {
+                chunk = ByteBuffer.allocateDirect(length);
+            }
+            chunk.duplicate().put(bytes, offset, length);
+            chunks[i] = chunk;
+            offset += length;
+        }
+        return chunks;
+    }
+
+    private static byte[] join(final ByteBuffer[] chunks, final int length) {
+        final byte[] bytes = new byte[length];
+        int offset = 0;
+        for ( ByteBuffer chunk : chunks ) {
+            final int n = Math.min(chunk.remaining(), length - offset);
+            chunk.duplicate().get(bytes, offset, n);
+            offset += n;
+        }
+        return bytes;
+    }
+
+    private static int stripSize(final TestImage image) {
+        return 4 * 4 * image.width;
+    }
+
+    private static int blockRowSize(final TestImage image, final CompressionType type) {
+        return (image.width + 3) / 4 * type.blockSize;
+    }
+
+    @Test
+    public void compressChunks() {
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                if ( image.height <= 12 )
+                    continue; // too few strips for all chunks
+                final byte[] blocks = Squish.compressImage(image.rgba, image.width, image.height, null,
+                                                           type, CompressionOptions.DEFAULT);
+
+                // the chunks cross the strips and block rows at different points, and include empty ones
+                final ByteBuffer[] rgbaChunks = split(image.rgba, stripSize(image), 1, 0, 2);
+                final ByteBuffer[] blockChunks = split(new byte[blocks.length + 5], blockRowSize(image, type), 2, 1, 0);
+                Squish.compressImage(rgbaChunks, image.width, image.height, blockChunks,
+                                     type, CompressionOptions.DEFAULT);
+
+                assertArrayEquals(type + " " + image.width + "x" + image.height, blocks, join(blockChunks, blocks.length));
+                assertEquals(3, rgbaChunks[0].position());
+                assertEquals(3, blockChunks[0].position());
+            }
+        }
+    }
+
+    @Test
+    public void decompressChunks() {
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                if ( image.height <= 12 )
+                    continue; // too few strips for all chunks
+                final byte[] blocks = Squish.compressImage(image.rgba, image.width, image.height, null, type);
+                final byte[] rgba = Squish.decompressImage(null, image.width, image.height, blocks, type);
+
+                final ByteBuffer[] blockChunks = split(blocks, blockRowSize(image, type), 1, 3);
+                final ByteBuffer[] rgbaChunks = split(new byte[rgba.length], stripSize(image), 0, 2, 1);
+                Squish.decompressImage(rgbaChunks, image.width, image.height, blockChunks, type);
+
+                assertArrayEquals(type + " " + image.width + "x" + image.height, rgba, join(rgbaChunks, rgba.length));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectPartialStrip() {
+        final TestImage image = TestImage.createAll().get(0);
+        // the first chunk ends within the second strip
+        final ByteBuffer[] rgbaChunks = { ByteBuffer.wrap(image.rgba, 0, stripSize(image) + 4),
+                                          ByteBuffer.wrap(image.rgba, stripSize(image) + 4, image.rgba.length - stripSize(image) - 4) };
+        Squish.compressImage(rgbaChunks, image.width, image.height, new ByteBuffer[] { ByteBuffer.allocate(64 * 64) },
+                             CompressionType.DXT1, CompressionOptions.DEFAULT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectTooFewBlocks() {
+        final TestImage image = TestImage.createAll().get(0);
+        Squish.decompressImage(new ByteBuffer[] { ByteBuffer.allocate(image.rgba.length) }, image.width, image.height,
+                               new ByteBuffer[] { ByteBuffer.allocate(32 * 16), ByteBuffer.allocate(32 * 15) }, CompressionType.DXT1);
+    }
+
+    @Test
+    public void storageRequirementsOfLargeImages() {
+        final int size = 100000;
+        assertEquals(25000L * 25000 * 16, Squish.getStorageRequirementsLong(size, size, CompressionType.DXT5));
+        // the int variant keeps overflowing as before
+        assertEquals((int)(25000L * 25000 * 16), Squish.getStorageRequirements(size, size, CompressionType.DXT5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectArrayImagesTooLarge() {
+        Squish.compressImage(new byte[64], 100000, 100000, null, CompressionType.DXT5);
+    }
+
+}
@@ -0,0 +1,108 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Checks that the pool hands out each compressor to one user at a time and
+// only takes back the compressors it created.
+public class SquishCompressorPoolTest {
+
+    @Test
+    public void reuseReleasedCompressor() {
+        final SquishCompressorPool pool = new SquishCompressorPool(CompressionType.DXT5);
+        final SquishCompressor first = pool.acquire();
+        final SquishCompressor second = pool.acquire();
+        assertNotSame(first, second);
+
+        pool.release(first);
+        assertSame(first, pool.acquire());
+        assertNotSame(second, pool.acquire());
+    }
+
+    @Test
+    public void compressLikeSquish() {
+        final CompressionOptions options = CompressionOptions.DEFAULT.withMethod(CompressionMethod.RANGE_FIT);
+        final SquishCompressorPool pool = new SquishCompressorPool(CompressionType.DXT1, options);
+        for ( TestImage image : TestImage.createAll() ) {
+            assertArrayEquals(Squish.compressImage(image.rgba, image.width, image.height, null, CompressionType.DXT1, options),
+                              pool.compressImage(image.rgba, image.width, image.height, null));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectForeignCompressor() {
+        final SquishCompressorPool pool = new SquishCompressorPool(CompressionType.DXT1);
+        pool.release(new SquishCompressor(CompressionType.DXT1));
+    }
+
+    @Test
+    public void rejectDoubleRelease() {
+        final SquishCompressorPool pool = new SquishCompressorPool(CompressionType.DXT1);
+        final SquishCompressor compressor = pool.acquire();
+        pool.release(compressor);
+        try {
+            pool.release(compressor);
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            // the compressor is handed out only once
+            assertSame(compressor, pool.acquire());
+            assertNotSame(compressor, pool.acquire());
+        }
+    }
+
+    @Test
+    public void dropCompressorWithBlockCache() {
+        final SquishCompressorPool pool = new SquishCompressorPool(CompressionType.DXT3);
+        final SquishCompressor compressor = pool.acquire();
+        compressor.setBlockCacheSize(16);
+        try {
+            pool.release(compressor);
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            // the compressor no longer belongs to the pool
+        }
+        assertNotSame(compressor, pool.acquire());
+
+        compressor.setBlockCacheSize(0);
+        try {
+            pool.release(compressor);
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+    }
+
+}
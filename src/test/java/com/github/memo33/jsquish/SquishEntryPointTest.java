@@ -0,0 +1,93 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionMetric;
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Compares the blocks of the entry points that compress the range fit in
+// batches (byte arrays) with those of the entry points that compress block by
+// block (direct buffers, recompressImage, the frame encoder and compressors
+// with a block cache), as well as with the stream encoder.
+public class SquishEntryPointTest {
+
+    @Test
+    public void entryPointsMatchCompressImage() {
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( CompressionMethod method : CompressionMethod.values() ) {
+                for ( CompressionMetric metric : CompressionMetric.values() ) {
+                    for ( boolean weightAlpha : new boolean[] { false, true } ) {
+                        for ( TestImage image : TestImage.createAll() ) {
+                            final String message = type + " " + method + " " + metric + " " + weightAlpha + " " + image.width + "x" + image.height;
+                            final byte[] rgba = image.rgba;
+                            final int width = image.width, height = image.height;
+                            final byte[] blocks = Squish.compressImage(rgba, width, height, null, type, CompressionOptions.of(method, metric, weightAlpha));
+
+                            final ByteBuffer source = ByteBuffer.allocateDirect(rgba.length);
+                            source.put(rgba).flip();
+                            final ByteBuffer target = ByteBuffer.allocateDirect(blocks.length);
+                            Squish.compressImage(source, width, height, target, type, CompressionOptions.of(method, metric, weightAlpha));
+                            final byte[] direct = new byte[blocks.length];
+                            target.get(direct);
+                            assertArrayEquals(message + ": direct buffer", blocks, direct);
+
+                            final byte[] recompressed = new byte[blocks.length];
+                            Squish.recompressImage(rgba, width, height, recompressed, new Rectangle[] { new Rectangle(0, 0, width, height) },
+                                                   type, CompressionOptions.of(method, metric, weightAlpha));
+                            assertArrayEquals(message + ": recompressImage", blocks, recompressed);
+
+                            final SquishFrameEncoder frameEncoder = new SquishFrameEncoder(width, height, type, CompressionOptions.of(method, metric, weightAlpha));
+                            assertArrayEquals(message + ": frame encoder", blocks, frameEncoder.encodeFrame(rgba, null));
+
+                            final SquishCompressor compressor = new SquishCompressor(type, CompressionOptions.of(method, metric, weightAlpha));
+                            compressor.setBlockCacheSize(64);
+                            assertArrayEquals(message + ": block cache", blocks, compressor.compressImage(rgba, width, height, null));
+
+                            final SquishStreamEncoder encoder = new SquishStreamEncoder(width, height, type, CompressionOptions.of(method, metric, weightAlpha));
+                            final byte[] strips = new byte[blocks.length];
+                            for ( int y = 0, offset = 0; !encoder.isFinished(); y += 4, offset += encoder.getBlockRowSize() ) {
+                                final byte[] strip = Arrays.copyOfRange(rgba, 4 * width * y, 4 * width * (y + encoder.getStripHeight()));
+                                System.arraycopy(encoder.encodeStrip(strip, null), 0, strips, offset, encoder.getBlockRowSize());
+                            }
+                            assertArrayEquals(message + ": stream encoder", blocks, strips);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+}
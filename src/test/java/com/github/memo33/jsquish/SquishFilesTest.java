@@ -0,0 +1,144 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Compresses and decompresses images through temporary files and compares
+// them with the images compressed and decompressed in memory.
+public class SquishFilesTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private void roundTrip(final byte[] rgba, final int width, final int height, final CompressionType type,
+                           final CompressionMethod method, final ForkJoinPool pool) throws IOException {
+        final String message = type + " " + method + " " + width + "x" + height + (pool == null ? "" : " parallel");
+        final Path rgbaFile = folder.newFile().toPath();
+        final Path blockFile = folder.newFile().toPath();
+        final Path decompressedFile = folder.newFile().toPath();
+        Files.write(rgbaFile, rgba);
+
+        if ( pool == null )
+            SquishFiles.compressFile(rgbaFile, width, height, blockFile, type, CompressionOptions.DEFAULT.withMethod(method));
+        else
+            SquishFiles.compressFileParallel(rgbaFile, width, height, blockFile, type, CompressionOptions.DEFAULT.withMethod(method), pool);
+        final byte[] blocks = Squish.compressImage(rgba, width, height, null, type, CompressionOptions.DEFAULT.withMethod(method));
+        assertArrayEquals(message, blocks, Files.readAllBytes(blockFile));
+
+        if ( pool == null )
+            SquishFiles.decompressFile(blockFile, width, height, decompressedFile, type);
+        else
+            SquishFiles.decompressFileParallel(blockFile, width, height, decompressedFile, type, pool);
+        assertArrayEquals(message, Squish.decompressImage(null, width, height, blocks, type), Files.readAllBytes(decompressedFile));
+    }
+
+    @Test
+    public void roundTripTestImages() throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for ( CompressionType type : CompressionType.values() ) {
+                for ( TestImage image : TestImage.createAll() ) {
+                    roundTrip(image.rgba, image.width, image.height, type, CompressionMethod.CLUSTER_FIT, null);
+                    roundTrip(image.rgba, image.width, image.height, type, CompressionMethod.CLUSTER_FIT, pool);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void roundTripSeveralWindows() throws IOException {
+        // the pixels take more than one mapping window of 32 MiB
+        final int width = 4096, height = 2052;
+        final byte[] rgba = new byte[4 * width * height];
+        final Random random = new Random(19);
+        for ( int y = 0; y < height; y++ ) {
+            for ( int x = 0; x < width; x++ ) {
+                final int i = 4 * (width * y + x);
+                rgba[i] = (byte)(x + random.nextInt(8));
+                rgba[i + 1] = (byte)(y + random.nextInt(8));
+                rgba[i + 2] = (byte)(x ^ y);
+                rgba[i + 3] = (byte)(y < 1024 ? 0xff : x);
+            }
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            roundTrip(rgba, width, height, CompressionType.DXT5, CompressionMethod.RANGE_FIT, null);
+            roundTrip(rgba, width, height, CompressionType.DXT1, CompressionMethod.RANGE_FIT, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectShortFile() throws IOException {
+        final Path rgbaFile = folder.newFile().toPath();
+        Files.write(rgbaFile, new byte[4 * 4 * 4 - 1]);
+        SquishFiles.compressFile(rgbaFile, 4, 4, folder.newFile().toPath(),
+                                 CompressionType.DXT1, CompressionOptions.DEFAULT);
+    }
+
+    @Test
+    public void keepOutputOfRejectedFile() throws IOException {
+        final byte[] existing = { 1, 2, 3, 4, 5 };
+        final Path shortFile = folder.newFile().toPath();
+        Files.write(shortFile, new byte[7]);
+        final Path outputFile = folder.newFile().toPath();
+        Files.write(outputFile, existing);
+
+        try {
+            SquishFiles.compressFile(shortFile, 4, 4, outputFile, CompressionType.DXT1, CompressionOptions.DEFAULT);
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            assertArrayEquals(existing, Files.readAllBytes(outputFile));
+        }
+        try {
+            SquishFiles.decompressFile(shortFile, 4, 4, outputFile, CompressionType.DXT1);
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            assertArrayEquals(existing, Files.readAllBytes(outputFile));
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+public class SquishFrameEncoderTest {
+
+    private static final TestImage IMAGE = TestImage.createAll().get(0); // 64 x 64
+
+    @Test
+    public void reuseUnchangedBlocks() {
+        for ( CompressionType type : CompressionType.values() ) {
+            final SquishFrameEncoder encoder = new SquishFrameEncoder(IMAGE.width, IMAGE.height, type);
+            final byte[] expected = Squish.compressImage(IMAGE.rgba, IMAGE.width, IMAGE.height, null, type);
+
+            // the first frame is compressed completely
+            assertArrayEquals(type.toString(), expected, encoder.encodeFrame(IMAGE.rgba, null));
+            assertEquals(0, encoder.getSkippedBlocks());
+
+            assertArrayEquals(type.toString(), expected, encoder.encodeFrame(IMAGE.rgba, null));
+            assertEquals(16 * 16, encoder.getSkippedBlocks());
+
+            // one pixel changes one block
+            final byte[] rgba = IMAGE.rgba.clone();
+            rgba[4 * (IMAGE.width * 10 + 20)] ^= 0x40;
+            encoder.encodeFrame(rgba, null);
+            assertEquals(16 * 16 - 1, encoder.getSkippedBlocks());
+
+            encoder.reset();
+            encoder.encodeFrame(rgba, null);
+            assertEquals(0, encoder.getSkippedBlocks());
+        }
+    }
+
+    @Test
+    public void rangeFitMatchesCompressImage() {
+        // only the cluster fit is warm-started from the previous frame
+        final byte[] changed = TestImage.createAll().get(0).rgba.clone();
+        for ( int i = 0; i < changed.length; i += 4 )
+            changed[i] = (byte)(255 - changed[i]);
+        for ( CompressionType type : CompressionType.values() ) {
+            final SquishFrameEncoder encoder = new SquishFrameEncoder(IMAGE.width, IMAGE.height, type,
+                                                                      CompressionOptions.DEFAULT.withMethod(CompressionMethod.RANGE_FIT));
+            encoder.encodeFrame(IMAGE.rgba, null);
+            assertArrayEquals(type.toString(), Squish.compressImage(changed, IMAGE.width, IMAGE.height, null,
+                                                                    type, CompressionOptions.DEFAULT.withMethod(CompressionMethod.RANGE_FIT)),
+                              encoder.encodeFrame(changed, null));
+        }
+    }
+
+}
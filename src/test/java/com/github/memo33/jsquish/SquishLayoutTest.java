@@ -0,0 +1,253 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+import io.github.memo33.jsquish.Squish.PixelLayout;
+
+// Compares the pixel layouts other than RGBA bytes with the RGBA bytes of
+// the same test images, both when compressing and decompressing.
+public class SquishLayoutTest {
+
+    private static byte[] compress(final TestImage image, final CompressionType type) {
+        return Squish.compressImage(image.rgba, image.width, image.height, null,
+                                    type, CompressionOptions.DEFAULT);
+    }
+
+    private static int[] toARGB(final byte[] rgba) {
+        final int[] argb = new int[rgba.length / 4];
+        for ( int i = 0; i < argb.length; i++ )
+            argb[i] = (rgba[4 * i + 3] & 0xff) << 24 | (rgba[4 * i] & 0xff) << 16 | (rgba[4 * i + 1] & 0xff) << 8 | (rgba[4 * i + 2] & 0xff);
+        return argb;
+    }
+
+    private static BufferedImage toImage(final TestImage image, final int imageType) {
+        final BufferedImage bufferedImage = new BufferedImage(image.width, image.height, imageType);
+        bufferedImage.setRGB(0, 0, image.width, image.height, toARGB(image.rgba), 0, image.width);
+        return bufferedImage;
+    }
+
+    @Test
+    public void compressARGB() {
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                assertArrayEquals(type.toString(), compress(image, type),
+                                  Squish.compressImage(toARGB(image.rgba), image.width, image.height, null,
+                                                       type, CompressionOptions.DEFAULT));
+            }
+        }
+    }
+
+    @Test
+    public void compressPixelLayouts() {
+        for ( PixelLayout layout : PixelLayout.values() ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                final byte[] pixels = new byte[image.rgba.length];
+                for ( int i = 0; i < pixels.length; i += 4 ) {
+                    pixels[i + layout.r] = image.rgba[i];
+                    pixels[i + layout.g] = image.rgba[i + 1];
+                    pixels[i + layout.b] = image.rgba[i + 2];
+                    pixels[i + layout.a] = image.rgba[i + 3];
+                }
+                final SquishCompressor compressor = new SquishCompressor(CompressionType.DXT5, CompressionOptions.DEFAULT);
+                assertArrayEquals(layout.toString(), compress(image, CompressionType.DXT5),
+                                  compressor.compressImage(pixels, layout, image.width, image.height, null));
+            }
+        }
+    }
+
+    @Test
+    public void compressRasters() {
+        // the packed and interleaved images are read from their data buffers directly
+        for ( int imageType : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR } ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                assertArrayEquals("type " + imageType, compress(image, CompressionType.DXT5),
+                                  Squish.compressImage(toImage(image, imageType).getRaster(), null,
+                                                       CompressionType.DXT5, CompressionOptions.DEFAULT));
+            }
+        }
+    }
+
+    @Test
+    public void compressBandedRaster() {
+        // read through the sample model
+        for ( TestImage image : TestImage.createAll() ) {
+            final WritableRaster raster = Raster.createBandedRaster(DataBuffer.TYPE_BYTE, image.width, image.height, 4, null);
+            final int[] samples = new int[image.rgba.length];
+            for ( int i = 0; i < samples.length; i++ )
+                samples[i] = image.rgba[i] & 0xff;
+            raster.setPixels(0, 0, image.width, image.height, samples);
+            assertArrayEquals(compress(image, CompressionType.DXT5),
+                              Squish.compressImage(raster, null,
+                                                   CompressionType.DXT5, CompressionOptions.DEFAULT));
+        }
+    }
+
+    @Test
+    public void compressShortRaster() {
+        // 16-bit samples are rescaled to 8 bits
+        for ( TestImage image : TestImage.createAll() ) {
+            final WritableRaster raster = Raster.createBandedRaster(DataBuffer.TYPE_USHORT, image.width, image.height, 4, null);
+            final int[] samples = new int[image.rgba.length];
+            for ( int i = 0; i < samples.length; i++ )
+                samples[i] = (image.rgba[i] & 0xff) * 257;
+            raster.setPixels(0, 0, image.width, image.height, samples);
+            assertArrayEquals(compress(image, CompressionType.DXT5),
+                              Squish.compressImage(raster, null,
+                                                   CompressionType.DXT5, CompressionOptions.DEFAULT));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectFloatRaster() {
+        final WritableRaster raster = Raster.createWritableRaster(
+            new BandedSampleModel(DataBuffer.TYPE_FLOAT, 4, 4, 4), null);
+        Squish.compressImage(raster, null, CompressionType.DXT1, CompressionOptions.DEFAULT);
+    }
+
+    @Test
+    public void compressOpaqueRaster() {
+        for ( TestImage image : TestImage.createAll() ) {
+            final BufferedImage bufferedImage = toImage(image, BufferedImage.TYPE_3BYTE_BGR);
+            final byte[] rgba = image.rgba.clone();
+            for ( int i = 3; i < rgba.length; i += 4 )
+                rgba[i] = (byte)0xff;
+            assertArrayEquals(Squish.compressImage(rgba, image.width, image.height, null,
+                                                   CompressionType.DXT1, CompressionOptions.DEFAULT),
+                              Squish.compressImage(bufferedImage.getRaster(), null,
+                                                   CompressionType.DXT1, CompressionOptions.DEFAULT));
+        }
+    }
+
+    @Test
+    public void compressSubimageRaster() {
+        final TestImage image = TestImage.createAll().get(0);
+        final BufferedImage bufferedImage = new BufferedImage(image.width + 8, image.height + 4, BufferedImage.TYPE_4BYTE_ABGR);
+        bufferedImage.setRGB(5, 3, image.width, image.height, toARGB(image.rgba), 0, image.width);
+        final BufferedImage subimage = bufferedImage.getSubimage(5, 3, image.width, image.height);
+        assertArrayEquals(compress(image, CompressionType.DXT3),
+                          Squish.compressImage(subimage.getRaster(), null,
+                                               CompressionType.DXT3, CompressionOptions.DEFAULT));
+    }
+
+    private static byte[] decompress(final TestImage image, final byte[] blocks, final CompressionType type) {
+        return Squish.decompressImage(null, image.width, image.height, blocks, type);
+    }
+
+    @Test
+    public void decompressARGB() {
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                final byte[] blocks = compress(image, type);
+                assertArrayEquals(type.toString(), toARGB(decompress(image, blocks, type)),
+                                  Squish.decompressImageARGB(null, image.width, image.height, blocks, type));
+            }
+        }
+    }
+
+    @Test
+    public void decompressPixelLayouts() {
+        for ( PixelLayout layout : PixelLayout.values() ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                final byte[] blocks = compress(image, CompressionType.DXT5);
+                final byte[] rgba = decompress(image, blocks, CompressionType.DXT5);
+                final byte[] pixels = Squish.decompressImage(null, layout, image.width, image.height, blocks, CompressionType.DXT5);
+                for ( int i = 0; i < pixels.length; i += 4 ) {
+                    assertEquals(rgba[i], pixels[i + layout.r]);
+                    assertEquals(rgba[i + 1], pixels[i + layout.g]);
+                    assertEquals(rgba[i + 2], pixels[i + layout.b]);
+                    assertEquals(rgba[i + 3], pixels[i + layout.a]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decompressRasters() {
+        for ( int imageType : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR } ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                final byte[] blocks = compress(image, CompressionType.DXT3);
+                final BufferedImage bufferedImage = new BufferedImage(image.width, image.height, imageType);
+                Squish.decompressImage(bufferedImage.getRaster(), blocks, CompressionType.DXT3);
+                assertArrayEquals("type " + imageType, toARGB(decompress(image, blocks, CompressionType.DXT3)),
+                                  bufferedImage.getRGB(0, 0, image.width, image.height, null, 0, image.width));
+            }
+        }
+    }
+
+    @Test
+    public void decompressBandedRaster() {
+        for ( TestImage image : TestImage.createAll() ) {
+            final byte[] blocks = compress(image, CompressionType.DXT1);
+            final WritableRaster raster = Raster.createBandedRaster(DataBuffer.TYPE_BYTE, image.width, image.height, 4, null);
+            Squish.decompressImage(raster, blocks, CompressionType.DXT1);
+            final byte[] rgba = decompress(image, blocks, CompressionType.DXT1);
+            final int[] samples = raster.getPixels(0, 0, image.width, image.height, (int[])null);
+            for ( int i = 0; i < samples.length; i++ )
+                assertEquals(rgba[i] & 0xff, samples[i]);
+        }
+    }
+
+    @Test
+    public void decompressShortRaster() {
+        // 8-bit values are rescaled to 16-bit samples
+        for ( TestImage image : TestImage.createAll() ) {
+            final byte[] blocks = compress(image, CompressionType.DXT5);
+            final WritableRaster raster = Raster.createBandedRaster(DataBuffer.TYPE_USHORT, image.width, image.height, 4, null);
+            Squish.decompressImage(raster, blocks, CompressionType.DXT5);
+            final byte[] rgba = decompress(image, blocks, CompressionType.DXT5);
+            final int[] samples = raster.getPixels(0, 0, image.width, image.height, (int[])null);
+            for ( int i = 0; i < samples.length; i++ )
+                assertEquals((rgba[i] & 0xff) * 257, samples[i]);
+        }
+    }
+
+    @Test
+    public void decompressSubimageRaster() {
+        final TestImage image = TestImage.createAll().get(0);
+        final byte[] blocks = compress(image, CompressionType.DXT5);
+        final BufferedImage bufferedImage = new BufferedImage(image.width + 8, image.height + 4, BufferedImage.TYPE_INT_ARGB);
+        Squish.decompressImage(bufferedImage.getSubimage(5, 3, image.width, image.height).getRaster(), blocks, CompressionType.DXT5);
+        assertArrayEquals(toARGB(decompress(image, blocks, CompressionType.DXT5)),
+                          bufferedImage.getRGB(5, 3, image.width, image.height, null, 0, image.width));
+        // the pixels around the sub-image are left alone
+        assertEquals(0, bufferedImage.getRGB(4, 3));
+        assertEquals(0, bufferedImage.getRGB(5, 2));
+    }
+
+}
@@ -0,0 +1,101 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionMetric;
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionQuality;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Compresses the test images with every quality level and checks that each
+// level trades speed for quality as intended.
+public class SquishQualityTest {
+
+    @Test
+    public void normalMatchesReference() throws NoSuchAlgorithmException {
+        final List<TestImage> images = TestImage.createAll();
+
+        final List<String> digests = new ArrayList<String>();
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( CompressionMethod method : CompressionMethod.values() ) {
+                for ( CompressionMetric metric : CompressionMetric.values() ) {
+                    for ( boolean weightAlpha : new boolean[] { false, true } ) {
+                        final CompressionOptions options = CompressionOptions.of(method, metric, weightAlpha).withQuality(CompressionQuality.NORMAL);
+                        digests.add(type + " " + method + " " + metric + " " + weightAlpha + " " + digest(images, type, options));
+                    }
+                }
+            }
+        }
+        assertEquals(Arrays.asList(SquishRegressionTest.REFERENCE), digests);
+    }
+
+    @Test
+    public void levelsGiveDifferentBlocks() throws NoSuchAlgorithmException {
+        final List<TestImage> images = TestImage.createAll();
+        for ( CompressionType type : CompressionType.values() ) {
+            final Set<String> digests = new HashSet<String>();
+            for ( CompressionQuality quality : CompressionQuality.values() )
+                digests.add(digest(images, type, CompressionOptions.DEFAULT.withQuality(quality)));
+            assertEquals(type.toString(), CompressionQuality.values().length, digests.size());
+        }
+    }
+
+    @Test
+    public void errorDoesNotIncreaseWithQuality() {
+        final List<TestImage> images = TestImage.createAll();
+        for ( CompressionType type : CompressionType.values() ) {
+            double previous = Double.POSITIVE_INFINITY;
+            for ( CompressionQuality quality : CompressionQuality.values() ) {
+                final CompressionOptions options = CompressionOptions.of(CompressionMethod.CLUSTER_FIT, CompressionMetric.UNIFORM, false).withQuality(quality);
+                final double error = SquishRegressionTest.colourError(images, type, options);
+                assertTrue(type + " " + quality + ": " + error + " > " + previous, error <= previous);
+                previous = error;
+            }
+        }
+    }
+
+    private static String digest(final List<TestImage> images, final CompressionType type, final CompressionOptions options) throws NoSuchAlgorithmException {
+        final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+        for ( TestImage image : images )
+            sha1.update(Squish.compressImage(image.rgba, image.width, image.height, null, type, options));
+        return SquishRegressionTest.toHex(sha1.digest());
+    }
+
+}
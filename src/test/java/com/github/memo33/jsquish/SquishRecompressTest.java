@@ -0,0 +1,105 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+public class SquishRecompressTest {
+
+    private static final TestImage IMAGE = TestImage.createAll().get(1); // 37 x 21
+
+    private static byte[] compress(final byte[] rgba, final CompressionType type) {
+        return Squish.compressImage(rgba, IMAGE.width, IMAGE.height, null,
+                                    type, CompressionOptions.DEFAULT);
+    }
+
+    // inverts the colours of the pixels of the rectangle, clipped to the image
+    private static void invert(final byte[] rgba, final Rectangle rect) {
+        final Rectangle clipped = rect.intersection(new Rectangle(IMAGE.width, IMAGE.height));
+        for ( int y = clipped.y; y < clipped.y + clipped.height; y++ )
+            for ( int x = clipped.x; x < clipped.x + clipped.width; x++ )
+                for ( int c = 0; c < 3; c++ )
+                    rgba[4 * (IMAGE.width * y + x) + c] ^= 0xff;
+    }
+
+    @Test
+    public void recompressDirtyRects() {
+        // unaligned, overlapping and partly outside of the image
+        final Rectangle[] dirtyRects = {
+            new Rectangle(5, 6, 3, 7),
+            new Rectangle(6, 10, 9, 2),
+            new Rectangle(30, -2, 20, 5),
+            new Rectangle(0, 20, 1, 1),
+        };
+        for ( CompressionType type : CompressionType.values() ) {
+            final byte[] rgba = IMAGE.rgba.clone();
+            final byte[] blocks = compress(rgba, type);
+            for ( Rectangle dirty : dirtyRects )
+                invert(rgba, dirty);
+
+            Squish.recompressImage(rgba, IMAGE.width, IMAGE.height, blocks, dirtyRects,
+                                   type, CompressionOptions.DEFAULT);
+            assertArrayEquals(type.toString(), compress(rgba, type), blocks);
+        }
+    }
+
+    @Test
+    public void keepBlocksOutsideDirtyRects() {
+        for ( CompressionType type : CompressionType.values() ) {
+            final byte[] rgba = IMAGE.rgba.clone();
+            final byte[] blocks = compress(rgba, type);
+            final byte[] original = blocks.clone();
+
+            // the pixels change outside of the dirty rectangle as well, but
+            // only the blocks of the rectangle are compressed again
+            invert(rgba, new Rectangle(0, 0, 8, 4));
+            final SquishCompressor compressor = new SquishCompressor(type, CompressionOptions.DEFAULT);
+            compressor.recompressImage(rgba, IMAGE.width, IMAGE.height, blocks, new Rectangle(1, 1, 2, 2));
+
+            final byte[] recompressed = compress(rgba, type);
+            final int blockSize = type.blockSize;
+            assertArrayEquals(type.toString(), Arrays.copyOfRange(recompressed, 0, blockSize),
+                              Arrays.copyOfRange(blocks, 0, blockSize));
+            assertArrayEquals(type.toString(), Arrays.copyOfRange(original, blockSize, blocks.length),
+                              Arrays.copyOfRange(blocks, blockSize, blocks.length));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectMissingRects() {
+        Squish.recompressImage(IMAGE.rgba, IMAGE.width, IMAGE.height, compress(IMAGE.rgba, CompressionType.DXT1), null,
+                               CompressionType.DXT1, CompressionOptions.DEFAULT);
+    }
+
+}
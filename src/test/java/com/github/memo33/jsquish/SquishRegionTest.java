@@ -0,0 +1,127 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Compresses and decompresses the test images as regions of larger arrays.
+public class SquishRegionTest {
+
+    // the margins around the regions
+    private static final int LEFT = 3, TOP = 2, RIGHT = 5, BOTTOM = 3;
+    private static final int BLOCK_OFFSET = 7, BLOCK_PADDING = 24;
+
+    private static final byte FILL = (byte)0x5a;
+
+    @Test
+    public void compressRegion() {
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                final int stride = 4 * (LEFT + image.width + RIGHT);
+                final byte[] canvas = new byte[stride * (TOP + image.height + BOTTOM)];
+                for ( int y = 0; y < image.height; y++ )
+                    System.arraycopy(image.rgba, 4 * image.width * y, canvas, stride * (TOP + y) + 4 * LEFT, 4 * image.width);
+
+                final byte[] expected = Squish.compressImage(image.rgba, image.width, image.height, null,
+                                                             type, CompressionOptions.DEFAULT.withMethod(CompressionMethod.RANGE_FIT));
+                final int blockRowSize = (image.width + 3) / 4 * type.blockSize;
+                final int blockRows = expected.length / blockRowSize;
+                final int blockStride = blockRowSize + BLOCK_PADDING;
+                final byte[] blocks = new byte[BLOCK_OFFSET + blockStride * blockRows];
+                Arrays.fill(blocks, FILL);
+
+                Squish.compressImage(canvas, stride * TOP + 4 * LEFT, stride, image.width, image.height,
+                                     blocks, BLOCK_OFFSET, blockStride, type, CompressionOptions.DEFAULT.withMethod(CompressionMethod.RANGE_FIT));
+
+                for ( int i = 0; i < BLOCK_OFFSET; i++ )
+                    assertEquals(FILL, blocks[i]);
+                for ( int row = 0; row < blockRows; row++ ) {
+                    final int offset = BLOCK_OFFSET + blockStride * row;
+                    assertArrayEquals(type + " row " + row, Arrays.copyOfRange(expected, blockRowSize * row, blockRowSize * (row + 1)),
+                                      Arrays.copyOfRange(blocks, offset, offset + blockRowSize));
+                    for ( int i = offset + blockRowSize; i < offset + blockStride; i++ )
+                        assertEquals(FILL, blocks[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decompressRegion() {
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                final byte[] compressed = Squish.compressImage(image.rgba, image.width, image.height, null,
+                                                               type, CompressionOptions.DEFAULT.withMethod(CompressionMethod.RANGE_FIT));
+                final byte[] expected = Squish.decompressImage(null, image.width, image.height, compressed, type);
+
+                final int blockRowSize = (image.width + 3) / 4 * type.blockSize;
+                final int blockRows = compressed.length / blockRowSize;
+                final int blockStride = blockRowSize + BLOCK_PADDING;
+                final byte[] blocks = new byte[BLOCK_OFFSET + blockStride * blockRows];
+                for ( int row = 0; row < blockRows; row++ )
+                    System.arraycopy(compressed, blockRowSize * row, blocks, BLOCK_OFFSET + blockStride * row, blockRowSize);
+
+                final int stride = 4 * (LEFT + image.width + RIGHT);
+                final byte[] canvas = new byte[stride * (TOP + image.height + BOTTOM)];
+                Arrays.fill(canvas, FILL);
+
+                Squish.decompressImage(canvas, stride * TOP + 4 * LEFT, stride, image.width, image.height,
+                                       blocks, BLOCK_OFFSET, blockStride, type);
+
+                for ( int y = 0; y < TOP + image.height + BOTTOM; y++ ) {
+                    for ( int x = 0; x < LEFT + image.width + RIGHT; x++ ) {
+                        final boolean inside = x >= LEFT && x < LEFT + image.width && y >= TOP && y < TOP + image.height;
+                        for ( int c = 0; c < 4; c++ ) {
+                            final byte value = canvas[stride * y + 4 * x + c];
+                            assertEquals(type + " " + x + "," + y, inside ? expected[4 * (image.width * (y - TOP) + x - LEFT) + c] : FILL, value);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectShortStride() {
+        Squish.compressImage(new byte[4 * 16 * 8], 0, 4 * 7, 8, 8, new byte[64], 0, 16,
+                             CompressionType.DXT1, CompressionOptions.DEFAULT.withMethod(CompressionMethod.RANGE_FIT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectRegionBeyondArray() {
+        Squish.decompressImage(new byte[4 * 8 * 8], 4, 4 * 8, 8, 8, new byte[32], 0, 16, CompressionType.DXT1);
+    }
+
+}
@@ -0,0 +1,213 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionMethod;
+import io.github.memo33.jsquish.Squish.CompressionMetric;
+import io.github.memo33.jsquish.Squish.CompressionOptions;
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Compresses the test images with every type, method, metric and alpha
+// weighting and compares the digests of the blocks with reference ones.
+public class SquishRegressionTest {
+
+    // the SHA-1 digests of the blocks of all test images, as computed by the
+    // original implementation, except for the cluster fit, whose prefix sums
+    // round differently in the last float bits, and the dxt1 range fit, which
+    // used to write the endpoints of the previous block into fully
+    // transparent blocks
+    static final String[] REFERENCE = {
+        "DXT1 CLUSTER_FIT PERCEPTUAL false 470b235f02f6b36da0049ea17cb7423f918733e5",
+        "DXT1 CLUSTER_FIT PERCEPTUAL true e87f984477841c01e1551ab0d70db47abf38b6d0",
+        "DXT1 CLUSTER_FIT UNIFORM false 7397b8e9851a56bd0811b27fd63ae971cf91a4bd",
+        "DXT1 CLUSTER_FIT UNIFORM true 684b87d2240dd5108840166224b453ef67db4be0",
+        "DXT1 RANGE_FIT PERCEPTUAL false 3a2a185a6254712df3052d1be9848ff35b5a9b80",
+        "DXT1 RANGE_FIT PERCEPTUAL true 03c4171a08dc3a92245887dc630126005c1b2edd",
+        "DXT1 RANGE_FIT UNIFORM false 4f0ba5f2371e44aa1e6a38739562fb53aec07301",
+        "DXT1 RANGE_FIT UNIFORM true 57349550c24812b9537756b399bf491840e85882",
+        "DXT3 CLUSTER_FIT PERCEPTUAL false 623402be1521295866f2e3d3e53913f0e9b6f23f",
+        "DXT3 CLUSTER_FIT PERCEPTUAL true d6d9b1f5e42011c61d68107da2328ebae3f9f2bb",
+        "DXT3 CLUSTER_FIT UNIFORM false 2ce55e12520eadc4dd7d3b11ee38c4928fc46de1",
+        "DXT3 CLUSTER_FIT UNIFORM true 02bd68103c3523bded5feb2171bab7bd47a780d6",
+        "DXT3 RANGE_FIT PERCEPTUAL false d2a5ff9d07f9468eccae36e101db1a3b97b207c8",
+        "DXT3 RANGE_FIT PERCEPTUAL true 14bb56a11fbbea77d817c9c78200f9de46379c05",
+        "DXT3 RANGE_FIT UNIFORM false 6bbc12f6598991bae6848026750e2527786260a9",
+        "DXT3 RANGE_FIT UNIFORM true 96d8173fc7f33c5a07877bd4ce33550595cbcdcb",
+        "DXT5 CLUSTER_FIT PERCEPTUAL false f67541858cc54ddc41930c93080516e0d11d1b9e",
+        "DXT5 CLUSTER_FIT PERCEPTUAL true f2c8508a8ecdb77e953a24d6fb44cccf0df79daf",
+        "DXT5 CLUSTER_FIT UNIFORM false ab7c9758cf0745c6c5162dd4a8a433a9ff15e3e4",
+        "DXT5 CLUSTER_FIT UNIFORM true c3410b0b97d138657b806cd8f7e5f4be41c1811d",
+        "DXT5 RANGE_FIT PERCEPTUAL false ca6b49adc6338f666938255822a3c60fa24e4a53",
+        "DXT5 RANGE_FIT PERCEPTUAL true 64f4b8ca4d075c9671e6ff1d5e6eb203df051ca6",
+        "DXT5 RANGE_FIT UNIFORM false 9510f73bb0171912965f1f72e5fd18e5c254ab15",
+        "DXT5 RANGE_FIT UNIFORM true 9070a1d1461772909202d5cf92d2bf79636e1f07",
+    };
+
+    // the root mean square error of the cluster fit of the original
+    // implementation, in the order of clusterFitErrors
+    private static final double[] REFERENCE_CLUSTER_FIT_ERROR = {
+        30.282452, // DXT1 PERCEPTUAL false
+        30.538586, // DXT1 PERCEPTUAL true
+        28.999623, // DXT1 UNIFORM false
+        29.265366, // DXT1 UNIFORM true
+        28.532662, // DXT3 PERCEPTUAL false
+        28.159678, // DXT3 PERCEPTUAL true
+        27.537330, // DXT3 UNIFORM false
+        27.345599, // DXT3 UNIFORM true
+        28.572785, // DXT5 PERCEPTUAL false
+        28.248620, // DXT5 PERCEPTUAL true
+        27.573321, // DXT5 UNIFORM false
+        27.418832, // DXT5 UNIFORM true
+    };
+
+    @Test
+    public void compressImageMatchesReference() throws NoSuchAlgorithmException {
+        assertEquals(Arrays.asList(REFERENCE), digests());
+    }
+
+    @Test
+    public void parallelMatchesSerial() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for ( CompressionType type : CompressionType.values() ) {
+                for ( CompressionMethod method : CompressionMethod.values() ) {
+                    for ( TestImage image : TestImage.createAll() ) {
+                        final byte[] blocks = Squish.compressImage(image.rgba, image.width, image.height, null,
+                                                                   type, method, CompressionMetric.PERCEPTUAL, false);
+                        final byte[] parallelBlocks = Squish.compressImageParallel(image.rgba, image.width, image.height, null,
+                                                                                   type, CompressionOptions.DEFAULT.withMethod(method), pool);
+                        assertArrayEquals(type + " " + method, blocks, parallelBlocks);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void clusterFitErrorDoesNotIncrease() {
+        final double[] errors = clusterFitErrors();
+        for ( int i = 0; i < errors.length; i++ ) {
+            if ( errors[i] > REFERENCE_CLUSTER_FIT_ERROR[i] * 1.0001 )
+                fail("cluster fit error " + i + " increased from " + REFERENCE_CLUSTER_FIT_ERROR[i] + " to " + errors[i]);
+        }
+    }
+
+    @Test
+    public void parallelDecompressionMatchesSerial() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for ( CompressionType type : CompressionType.values() ) {
+                for ( TestImage image : TestImage.createAll() ) {
+                    final byte[] blocks = Squish.compressImage(image.rgba, image.width, image.height, null,
+                                                               type, CompressionMethod.RANGE_FIT, CompressionMetric.PERCEPTUAL, false);
+                    assertArrayEquals(type.toString(), Squish.decompressImage(null, image.width, image.height, blocks, type),
+                                      Squish.decompressImageParallel(null, image.width, image.height, blocks, type, pool));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static List<String> digests() throws NoSuchAlgorithmException {
+        final List<TestImage> images = TestImage.createAll();
+
+        final List<String> digests = new ArrayList<String>();
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( CompressionMethod method : CompressionMethod.values() ) {
+                for ( CompressionMetric metric : CompressionMetric.values() ) {
+                    for ( boolean weightAlpha : new boolean[] { false, true } ) {
+                        final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+                        for ( TestImage image : images )
+                            sha1.update(Squish.compressImage(image.rgba, image.width, image.height, null, type, method, metric, weightAlpha));
+                        digests.add(type + " " + method + " " + metric + " " + weightAlpha + " " + toHex(sha1.digest()));
+                    }
+                }
+            }
+        }
+        return digests;
+    }
+
+    // the root mean square colour error of the visible pixels of the test
+    // images, for every type, metric and alpha weighting of the cluster fit
+    static double[] clusterFitErrors() {
+        final List<TestImage> images = TestImage.createAll();
+
+        final double[] errors = new double[CompressionType.values().length * CompressionMetric.values().length * 2];
+        int i = 0;
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( CompressionMetric metric : CompressionMetric.values() ) {
+                for ( boolean weightAlpha : new boolean[] { false, true } ) {
+                    errors[i++] = colourError(images, type, CompressionOptions.of(CompressionMethod.CLUSTER_FIT, metric, weightAlpha));
+                }
+            }
+        }
+        return errors;
+    }
+
+    // the root mean square colour error of the visible pixels of the images
+    static double colourError(final List<TestImage> images, final CompressionType type, final CompressionOptions options) {
+        double sum = 0;
+        int count = 0;
+        for ( TestImage image : images ) {
+            final byte[] blocks = Squish.compressImage(image.rgba, image.width, image.height, null, type, options);
+            final byte[] decoded = Squish.decompressImage(null, image.width, image.height, blocks, type);
+            for ( int j = 0; j < image.rgba.length; j += 4 ) {
+                if ( decoded[j + 3] == 0 )
+                    continue;
+                for ( int c = 0; c < 3; c++ ) {
+                    final int d = (image.rgba[j + c] & 0xff) - (decoded[j + c] & 0xff);
+                    sum += d * d;
+                }
+                count += 3;
+            }
+        }
+        return Math.sqrt(sum / count);
+    }
+
+    static String toHex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder();
+        for ( byte b : bytes )
+            sb.append(String.format("%02x", b & 0xff));
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,141 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionType;
+
+// Compresses and decompresses the test images strip by strip and compares
+// them with the images compressed and decompressed as a whole.
+public class SquishStreamTest {
+
+    private static byte[] strip(final TestImage image, final int y, final int rows) {
+        return Arrays.copyOfRange(image.rgba, 4 * image.width * y, 4 * image.width * (y + rows));
+    }
+
+    @Test
+    public void encodeStrips() {
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                final SquishStreamEncoder encoder = new SquishStreamEncoder(image.width, image.height, type);
+                final byte[] blocks = new byte[Squish.getStorageRequirements(image.width, image.height, type)];
+                int y = 0, offset = 0;
+                while ( !encoder.isFinished() ) {
+                    final int rows = encoder.getStripHeight();
+                    final byte[] row = encoder.encodeStrip(strip(image, y, rows), null);
+                    assertEquals(encoder.getBlockRowSize(), row.length);
+                    System.arraycopy(row, 0, blocks, offset, row.length);
+                    y += rows;
+                    offset += row.length;
+                }
+                assertEquals(image.height, y);
+                assertEquals(0, encoder.getStripHeight());
+                assertArrayEquals(type.toString(), Squish.compressImage(image.rgba, image.width, image.height, null, type), blocks);
+            }
+        }
+    }
+
+    @Test
+    public void writeStrips() throws IOException {
+        final TestImage image = TestImage.createAll().get(1); // 37 x 21
+        final SquishStreamEncoder encoder = new SquishStreamEncoder(image.width, image.height, CompressionType.DXT5);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final WritableByteChannel channel = Channels.newChannel(out);
+        for ( int y = 0; !encoder.isFinished(); y += 4 )
+            encoder.writeStrip(strip(image, y, encoder.getStripHeight()), channel);
+        assertArrayEquals(Squish.compressImage(image.rgba, image.width, image.height, null, CompressionType.DXT5), out.toByteArray());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectStripsAfterLast() {
+        final TestImage image = TestImage.createAll().get(4); // 6 x 3
+        final SquishStreamEncoder encoder = new SquishStreamEncoder(image.width, image.height, CompressionType.DXT1);
+        encoder.encodeStrip(image.rgba, null);
+        assertTrue(encoder.isFinished());
+        encoder.encodeStrip(image.rgba, null);
+    }
+
+    @Test
+    public void decodeStrips() {
+        for ( CompressionType type : CompressionType.values() ) {
+            for ( TestImage image : TestImage.createAll() ) {
+                final byte[] blocks = Squish.compressImage(image.rgba, image.width, image.height, null, type);
+                final SquishStreamDecoder decoder = new SquishStreamDecoder(image.width, image.height, type);
+                final byte[] rgba = new byte[image.rgba.length];
+                int y = 0, offset = 0;
+                while ( !decoder.isFinished() ) {
+                    final int rows = decoder.getStripHeight();
+                    final byte[] strip = decoder.decodeStrip(blocks, offset, null);
+                    System.arraycopy(strip, 0, rgba, 4 * image.width * y, 4 * image.width * rows);
+                    y += rows;
+                    offset += decoder.getBlockRowSize();
+                }
+                assertEquals(image.height, y);
+                assertArrayEquals(type.toString(), Squish.decompressImage(null, image.width, image.height, blocks, type), rgba);
+            }
+        }
+    }
+
+    @Test
+    public void encodeAndDecodeChannels() throws IOException {
+        for ( TestImage image : TestImage.createAll() ) {
+            final SquishStreamEncoder encoder = new SquishStreamEncoder(image.width, image.height, CompressionType.DXT3);
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            final WritableByteChannel channel = Channels.newChannel(compressed);
+            for ( int y = 0; !encoder.isFinished(); y += 4 )
+                encoder.writeStrip(strip(image, y, encoder.getStripHeight()), channel);
+
+            final SquishStreamDecoder decoder = new SquishStreamDecoder(image.width, image.height, CompressionType.DXT3);
+            final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            decoder.decode(Channels.newChannel(new ByteArrayInputStream(compressed.toByteArray())), Channels.newChannel(decompressed));
+
+            assertArrayEquals(Squish.decompressImage(null, image.width, image.height, compressed.toByteArray(), CompressionType.DXT3),
+                              decompressed.toByteArray());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void rejectTruncatedChannel() throws IOException {
+        final TestImage image = TestImage.createAll().get(0);
+        final byte[] blocks = Squish.compressImage(image.rgba, image.width, image.height, null, CompressionType.DXT1);
+        final SquishStreamDecoder decoder = new SquishStreamDecoder(image.width, image.height, CompressionType.DXT1);
+        decoder.decode(Channels.newChannel(new ByteArrayInputStream(blocks, 0, blocks.length - 1)), (rgba, y, rows) -> { });
+    }
+
+}
@@ -0,0 +1,97 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// An RGBA image of the fixed set that the tests compress.
+final class TestImage {
+
+    final int width;
+    final int height;
+    final byte[] rgba;
+
+    private TestImage(final int width, final int height, final byte[] rgba) {
+        this.width = width;
+        this.height = height;
+        this.rgba = rgba;
+    }
+
+    // images of sizes that are not all multiples of 4, with smooth gradients,
+    // noise, few colours, binary as well as smooth alpha, and fully
+    // transparent blocks at the start of every other block row
+    static List<TestImage> createAll() {
+        final Random random = new Random(33);
+
+        final int[][] dims = { { 64, 64 }, { 37, 21 }, { 32, 32 }, { 16, 16 }, { 6, 3 }, { 8, 32 } };
+        final int[] palette = { 0xff000000, 0xffffffff, 0xff3366cc, 0x80e0a020, 0x00000000, 0xff10f010 };
+        final List<TestImage> images = new ArrayList<TestImage>();
+        for ( int kind = 0; kind < dims.length; ++kind ) {
+            final int width = dims[kind][0], height = dims[kind][1];
+            final byte[] rgba = new byte[4 * width * height];
+            for ( int y = 0; y < height; ++y ) {
+                for ( int x = 0; x < width; ++x ) {
+                    final int i = 4 * (y * width + x);
+                    switch ( kind ) {
+                        case 0: // gradients with a little noise and smooth alpha
+                            rgba[i] = (byte)(4 * x + random.nextInt(8));
+                            rgba[i + 1] = (byte)(4 * y + random.nextInt(8));
+                            rgba[i + 2] = (byte)(2 * (x + y));
+                            rgba[i + 3] = (byte)(255 - 3 * x);
+                            break;
+                        case 1: // random colours with binary alpha
+                            rgba[i] = (byte)random.nextInt(256);
+                            rgba[i + 1] = (byte)random.nextInt(256);
+                            rgba[i + 2] = (byte)random.nextInt(256);
+                            rgba[i + 3] = (byte)(random.nextInt(4) == 0 ? 0 : 255);
+                            break;
+                        case 2: // few colours, including single-colour blocks
+                            final int argb = palette[x < 8 ? 1 : random.nextInt(y < 16 ? 3 : palette.length)];
+                            rgba[i] = (byte)(argb >> 16);
+                            rgba[i + 1] = (byte)(argb >> 8);
+                            rgba[i + 2] = (byte)argb;
+                            rgba[i + 3] = (byte)(argb >>> 24);
+                            break;
+                        case 5: // noise with fully transparent blocks
+                            for ( int c = 0; c < 3; ++c )
+                                rgba[i + c] = (byte)random.nextInt(256);
+                            rgba[i + 3] = (byte)(x < 4 && (y / 4) % 2 == 1 ? 0 : 255);
+                            break;
+                        default: // noise
+                            for ( int c = 0; c < 4; ++c )
+                                rgba[i + c] = (byte)random.nextInt(256);
+                            break;
+                    }
+                }
+            }
+            images.add(new TestImage(width, height, rgba));
+        }
+        return images;
+    }
+
+}
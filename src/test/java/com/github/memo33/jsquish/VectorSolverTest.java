@@ -0,0 +1,112 @@
+/* -----------------------------------------------------------------------------
+
+    Copyright (c) 2016 memo
+
+    Permission is hereby granted, free of charge, to any person obtaining
+    a copy of this software and associated documentation files (the
+    "Software"), to deal in the Software without restriction, including
+    without limitation the rights to use, copy, modify, merge, publish,
+    distribute, sublicense, and/or sell copies of the Software, and to
+    permit persons to whom the Software is furnished to do so, subject to
+    the following conditions:
+
+    The above copyright notice and this permission notice shall be included
+    in all copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+    OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+    MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+    IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+    CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+    TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+    SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   -------------------------------------------------------------------------- */
+
+package io.github.memo33.jsquish;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.github.memo33.jsquish.Squish.CompressionMetric;
+
+// Compares the vectorized partition solver with the scalar one. The tests
+// run with the Vector API enabled (see build.sbt), so the scalar path is
+// checked in a child JVM.
+public class VectorSolverTest {
+
+    private static boolean isVectorized() {
+        return PartitionBatch.SOLVER.getClass().getName().equals("io.github.memo33.jsquish.VectorPartitionSolver");
+    }
+
+    @Test
+    public void vectorSolverMatchesScalar() {
+        assumeTrue("the vector solver is not available", isVectorized());
+
+        final Random random = new Random(21);
+        final PartitionBatch batch = new PartitionBatch();
+        for ( CompressionMetric metric : CompressionMetric.values() ) {
+            for ( int n = 0; n < 100; n++ ) {
+                batch.size = 0;
+                // the batch sizes are not multiples of the vector length
+                final int size = 1 + random.nextInt(PartitionBatch.CAPACITY);
+                for ( int p = 0; p < size; p++ ) {
+                    // some partitions have empty clusters at either end
+                    final float alpha2 = p % 7 == 0 ? 0.0f : 16 * random.nextFloat();
+                    final float beta2 = p % 11 == 0 ? 0.0f : 16 * random.nextFloat();
+                    batch.add(alpha2, beta2, random.nextFloat() * (float)Math.sqrt(alpha2 * beta2),
+                              random.nextFloat(), random.nextFloat(), random.nextFloat(),
+                              random.nextFloat(), random.nextFloat(), random.nextFloat());
+                }
+                final float xxX = 16 * random.nextFloat(), xxY = 16 * random.nextFloat(), xxZ = 16 * random.nextFloat();
+
+                PartitionBatch.SOLVER.computeErrors(batch, xxX, xxY, xxZ, metric);
+                final float[] errors = Arrays.copyOf(batch.errors, size);
+                PartitionBatch.computeErrors(batch, xxX, xxY, xxZ, metric);
+                assertArrayEquals(metric + " batch " + n, Arrays.copyOf(batch.errors, size), errors, 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void scalarPathMatchesVectorPath() throws IOException, InterruptedException, NoSuchAlgorithmException {
+        final ProcessBuilder builder = new ProcessBuilder(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                                                          "-Djsquish.vector=false",
+                                                          "-cp", System.getProperty("java.class.path"),
+                                                          VectorSolverTest.class.getName());
+        builder.redirectErrorStream(true);
+        final Process process = builder.start();
+
+        final List<String> lines = new ArrayList<String>();
+        try ( BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)) ) {
+            for ( String line = reader.readLine(); line != null; line = reader.readLine() )
+                lines.add(line);
+        }
+        assertEquals(String.join("\n", lines), 0, process.waitFor());
+
+        assertEquals("scalar", lines.get(0));
+        assertEquals(SquishRegressionTest.digests(), lines.subList(1, lines.size()));
+    }
+
+    // prints the solver and the digests of the test images, for the child JVM
+    public static void main(final String[] args) throws Exception {
+        System.out.println(isVectorized() ? "vector" : "scalar");
+        for ( String digest : SquishRegressionTest.digests() )
+            System.out.println(digest);
+    }
+
+}